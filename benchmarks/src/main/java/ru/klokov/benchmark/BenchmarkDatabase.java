@@ -0,0 +1,37 @@
+package ru.klokov.benchmark;
+
+import org.sqlite.SQLiteDataSource;
+import ru.klokov.datasource.SchemaMigrator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class BenchmarkDatabase {
+    private final Path file;
+
+    private BenchmarkDatabase(Path file) {
+        this.file = file;
+    }
+
+    static BenchmarkDatabase create() throws IOException {
+        Path file = Files.createTempFile("currency-exchange-benchmark", ".db");
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + file);
+
+        SchemaMigrator schemaMigrator = new SchemaMigrator(dataSource);
+        schemaMigrator.migrate();
+        schemaMigrator.seedIfEmpty();
+        return new BenchmarkDatabase(file);
+    }
+
+    String getUrl() {
+        return "jdbc:sqlite:" + file;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+}
@@ -0,0 +1,112 @@
+package ru.klokov.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteDataSource;
+import ru.klokov.dao.CurrencyDAO;
+import ru.klokov.dao.DataVersion;
+import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.response.ExchangeResponse;
+import ru.klokov.service.ExchangeService;
+import ru.klokov.snapshot.CrossRatePolicy;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.DecimalParameter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvertBenchmark {
+    private BenchmarkDatabase database;
+    private ExchangeService exchangeService;
+    private RateSnapshot snapshot;
+    private Collection<ExchangeRate> exchangeRates;
+    private Currency usd;
+    private Currency eur;
+    private Currency rub;
+    private Currency jpy;
+    private String amountText;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create();
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl(database.getUrl());
+
+        CurrencyDAO currencyDAO = new CurrencyDAO(dataSource);
+        ExchangeRateDAO exchangeRateDAO = new ExchangeRateDAO(dataSource);
+        RateSnapshotHolder rateSnapshotHolder = new RateSnapshotHolder(currencyDAO, exchangeRateDAO,
+                new CrossRatePolicy(3, List.of("USD", "EUR"), 2048), new DataVersion());
+        rateSnapshotHolder.reload();
+
+        exchangeService = new ExchangeService(rateSnapshotHolder, exchangeRateDAO);
+        snapshot = rateSnapshotHolder.get();
+        exchangeRates = new ArrayList<>(snapshot.getExchangeRates());
+        usd = snapshot.findCurrencyByCode("USD").orElseThrow();
+        eur = snapshot.findCurrencyByCode("EUR").orElseThrow();
+        rub = snapshot.findCurrencyByCode("RUB").orElseThrow();
+        jpy = snapshot.findCurrencyByCode("JPY").orElseThrow();
+        amountText = "1234.56";
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.delete();
+    }
+
+    @Benchmark
+    public ExchangeResponse convertDirect() {
+        return exchangeService.convert(usd, eur, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public ExchangeResponse convertReverse() {
+        return exchangeService.convert(eur, usd, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public ExchangeResponse convertCross() {
+        return exchangeService.convert(rub, jpy, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public ExchangeResponse convertDirectFixedPoint() {
+        return exchangeService.convert(snapshot, usd, eur, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public ExchangeResponse convertReverseFixedPoint() {
+        return exchangeService.convert(snapshot, eur, usd, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public ExchangeResponse convertCrossFixedPoint() {
+        return exchangeService.convert(snapshot, rub, jpy, DecimalParameter.parseAmount(amountText));
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> resolveCrossWithoutMatrix() {
+        return snapshot.resolveRate(rub, jpy, exchangeRates);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.klokov.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteDataSource;
+import ru.klokov.dao.CurrencyDAO;
+import ru.klokov.dao.DataVersion;
+import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.datasource.PooledSQLiteDataSourceFactory;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.util.ApplicationProperties;
+
+import javax.sql.DataSource;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+    @Param({"pooled", "unpooled"})
+    private String dataSource;
+
+    private BenchmarkDatabase database;
+    private PooledSQLiteDataSourceFactory pooledFactory;
+    private CurrencyDAO currencyDAO;
+    private ExchangeRateDAO exchangeRateDAO;
+    private Currency usd;
+    private Currency eur;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create();
+        DataSource readDataSource;
+        DataSource writeDataSource;
+
+        if (dataSource.equals("pooled")) {
+            System.setProperty("db.url", database.getUrl());
+            pooledFactory = new PooledSQLiteDataSourceFactory(new ApplicationProperties());
+            System.clearProperty("db.url");
+            readDataSource = pooledFactory.getDataSource();
+            writeDataSource = pooledFactory.getWriteDataSource();
+        } else {
+            SQLiteDataSource sqLiteDataSource = new SQLiteDataSource();
+            sqLiteDataSource.setUrl(database.getUrl());
+            readDataSource = sqLiteDataSource;
+            writeDataSource = sqLiteDataSource;
+        }
+
+        DataVersion dataVersion = new DataVersion();
+        currencyDAO = new CurrencyDAO(readDataSource, writeDataSource, dataVersion);
+        exchangeRateDAO = new ExchangeRateDAO(readDataSource, writeDataSource, dataVersion);
+        usd = currencyDAO.findByCode("USD").orElseThrow();
+        eur = currencyDAO.findByCode("EUR").orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (pooledFactory != null) pooledFactory.close();
+        database.delete();
+    }
+
+    @Benchmark
+    public Optional<Currency> findByCode() {
+        return currencyDAO.findByCode("EUR");
+    }
+
+    @Benchmark
+    public Optional<Currency> findByCodeMissing() {
+        return currencyDAO.findByCode("XXX");
+    }
+
+    @Benchmark
+    public Optional<ExchangeRate> findByCurrencyPair() {
+        return exchangeRateDAO.findByCurrencyPair(usd, eur);
+    }
+
+    @Benchmark
+    public Optional<ExchangeRate> findByCurrencyPairMissing() {
+        return exchangeRateDAO.findByCurrencyPair(eur, usd);
+    }
+}
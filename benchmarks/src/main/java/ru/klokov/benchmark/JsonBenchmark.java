@@ -0,0 +1,101 @@
+package ru.klokov.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.klokov.model.Currency;
+import ru.klokov.response.ExchangeRateResponse;
+import ru.klokov.response.ExchangeResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private ObjectMapper mapper;
+    private ObjectWriter elementWriter;
+    private ExchangeResponse exchangeResponse;
+    private ExchangeRateResponse exchangeRateResponse;
+
+    @State(Scope.Benchmark)
+    public static class ListState {
+        @Param({"10", "100", "1000"})
+        private int size;
+
+        private List<ExchangeRateResponse> exchangeRateResponses;
+
+        @Setup
+        public void setUp() {
+            exchangeRateResponses = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Currency baseCurrency = new Currency((long) i, code(i), "Currency " + i, "¤");
+                Currency targetCurrency = new Currency((long) i + 1, code(i + 1), "Currency " + (i + 1), "¤");
+                exchangeRateResponses.add(new ExchangeRateResponse((long) i, baseCurrency, targetCurrency,
+                        new BigDecimal("1.2345").add(BigDecimal.valueOf(i, 4))));
+            }
+        }
+
+        private static String code(int i) {
+            return "" + (char) ('A' + i % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i / 676 % 26);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper();
+        elementWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        Currency usd = new Currency(1L, "USD", "United States dollar", "$");
+        Currency eur = new Currency(2L, "EUR", "Euro", "€");
+        exchangeResponse = new ExchangeResponse(usd, eur, new BigDecimal("0.9270"), new BigDecimal("1234.56"),
+                new BigDecimal("1144.4371"));
+        exchangeRateResponse = new ExchangeRateResponse(1L, usd, eur, new BigDecimal("0.9270"));
+    }
+
+    @Benchmark
+    public byte[] exchangeResponse() throws IOException {
+        return mapper.writeValueAsBytes(exchangeResponse);
+    }
+
+    @Benchmark
+    public byte[] exchangeRateResponse() throws IOException {
+        return mapper.writeValueAsBytes(exchangeRateResponse);
+    }
+
+    @Benchmark
+    public byte[] exchangeRateResponseList(ListState state) throws IOException {
+        return mapper.writeValueAsBytes(state.exchangeRateResponses);
+    }
+
+    @Benchmark
+    public void exchangeRateResponseListStreamed(ListState state) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(OutputStream.nullOutputStream(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (ExchangeRateResponse element : state.exchangeRateResponses) {
+                elementWriter.writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
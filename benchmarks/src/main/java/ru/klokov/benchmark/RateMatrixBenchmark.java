@@ -0,0 +1,77 @@
+package ru.klokov.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.snapshot.CrossRatePolicy;
+import ru.klokov.snapshot.RateMatrix;
+import ru.klokov.snapshot.RateSnapshot;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RateMatrixBenchmark {
+    @Param({"500", "2000", "4000"})
+    private int currencyCount;
+
+    private List<Currency> currencies;
+    private List<ExchangeRate> exchangeRates;
+    private CrossRatePolicy crossRatePolicy;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        currencies = new ArrayList<>(currencyCount);
+        exchangeRates = new ArrayList<>();
+
+        for (int i = 0; i < currencyCount; i++) {
+            currencies.add(new Currency((long) i + 1, code(i), "Currency " + i, "¤"));
+        }
+
+        long id = 1;
+        for (int i = 1; i < currencyCount; i++) {
+            exchangeRates.add(new ExchangeRate(id++, 1L, (long) i + 1, rate(random, 6)));
+        }
+        for (int i = 0; i < currencyCount / 10; i++) {
+            int base = 2 + random.nextInt(currencyCount - 2);
+            int target = 2 + random.nextInt(currencyCount - 2);
+            if (base != target) exchangeRates.add(new ExchangeRate(id++, (long) base + 1, (long) target + 1, rate(random, 4)));
+        }
+
+        crossRatePolicy = new CrossRatePolicy(3, List.of("USD", "EUR"), 4096);
+    }
+
+    @Benchmark
+    public RateMatrix buildMatrix() {
+        return RateSnapshot.of(1, currencies, exchangeRates, crossRatePolicy).getRateMatrix();
+    }
+
+    private static String code(int i) {
+        if (i == 0) return "USD";
+        if (i == 1) return "EUR";
+        return "" + (char) ('G' + i / 676 % 20) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+    }
+
+    private static BigDecimal rate(Random random, int scale) {
+        return BigDecimal.valueOf(100 + random.nextInt(10_000_000), scale);
+    }
+}
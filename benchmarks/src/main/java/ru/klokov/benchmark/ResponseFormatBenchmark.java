@@ -0,0 +1,102 @@
+package ru.klokov.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.klokov.model.Currency;
+import ru.klokov.response.ErrorResponse;
+import ru.klokov.response.ExchangeRateResponse;
+import ru.klokov.response.ExchangeResponse;
+import ru.klokov.util.ResponseFormat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+    static final String[] PAYLOADS = {"exchange", "currency", "error", "exchangeRates-100", "exchangeRates-1000"};
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private ResponseFormat format;
+
+    @Param({"exchange", "currency", "error", "exchangeRates-100", "exchangeRates-1000"})
+    private String payload;
+
+    private ObjectMapper mapper;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = mapper(format);
+        value = payload(payload);
+        encoded = mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public JsonNode deserialize() throws IOException {
+        return mapper.readTree(encoded);
+    }
+
+    static ObjectMapper mapper(ResponseFormat format) {
+        ObjectMapper mapper = new ObjectMapper();
+        return switch (format) {
+            case JSON -> mapper;
+            case SMILE -> mapper.copyWith(new SmileFactory());
+            case CBOR -> mapper.copyWith(new CBORFactory());
+        };
+    }
+
+    static Object payload(String payload) {
+        Currency usd = new Currency(1L, "USD", "United States dollar", "$");
+        Currency eur = new Currency(2L, "EUR", "Euro", "€");
+
+        return switch (payload) {
+            case "exchange" -> new ExchangeResponse(usd, eur, new BigDecimal("0.9270"), new BigDecimal("1234.56"),
+                    new BigDecimal("1144.4371"));
+            case "currency" -> usd;
+            case "error" -> new ErrorResponse("Currency with code XXX not found");
+            default -> exchangeRates(Integer.parseInt(payload.substring(payload.indexOf('-') + 1)));
+        };
+    }
+
+    private static List<ExchangeRateResponse> exchangeRates(int size) {
+        List<ExchangeRateResponse> exchangeRateResponses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Currency baseCurrency = new Currency((long) i, code(i), "Currency " + i, "¤");
+            Currency targetCurrency = new Currency((long) i + 1, code(i + 1), "Currency " + (i + 1), "¤");
+            exchangeRateResponses.add(new ExchangeRateResponse((long) i, baseCurrency, targetCurrency,
+                    new BigDecimal("1.2345").add(BigDecimal.valueOf(i, 4))));
+        }
+        return exchangeRateResponses;
+    }
+
+    private static String code(int i) {
+        return "" + (char) ('A' + i % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i / 676 % 26);
+    }
+}
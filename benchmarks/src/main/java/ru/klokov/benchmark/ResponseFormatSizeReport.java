@@ -0,0 +1,45 @@
+package ru.klokov.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.klokov.util.ResponseFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+public class ResponseFormatSizeReport {
+    public static void main(String[] args) throws IOException {
+        ObjectMapper jsonMapper = ResponseFormatBenchmark.mapper(ResponseFormat.JSON);
+
+        System.out.printf("%-20s %-6s %10s %10s %8s%n", "payload", "format", "bytes", "gzipped", "vs JSON");
+        for (String payload : ResponseFormatBenchmark.PAYLOADS) {
+            Object value = ResponseFormatBenchmark.payload(payload);
+            byte[] json = jsonMapper.writeValueAsBytes(value);
+            JsonNode expected = readTree(jsonMapper, json);
+
+            for (ResponseFormat format : ResponseFormat.values()) {
+                ObjectMapper mapper = ResponseFormatBenchmark.mapper(format);
+                byte[] encoded = mapper.writeValueAsBytes(value);
+                if (!readTree(mapper, encoded).equals(expected))
+                    throw new IllegalStateException(payload + " does not round-trip through " + format);
+
+                System.out.printf("%-20s %-6s %10d %10d %7.0f%%%n", payload, format, encoded.length, gzip(encoded).length,
+                        100.0 * encoded.length / json.length);
+            }
+        }
+    }
+
+    private static JsonNode readTree(ObjectMapper mapper, byte[] encoded) throws IOException {
+        return mapper.reader(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS).readTree(encoded);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
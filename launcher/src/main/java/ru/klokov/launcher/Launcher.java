@@ -0,0 +1,214 @@
+package ru.klokov.launcher;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.apache.tomcat.util.modeler.Registry;
+import ru.klokov.compression.CompressionFilter;
+import ru.klokov.metrics.MetricsRegistry;
+import ru.klokov.servlet.ApplicationServletContextListener;
+import ru.klokov.servlet.BatchExchangeServlet;
+import ru.klokov.servlet.ExchangeFanoutServlet;
+import ru.klokov.servlet.ExchangeServlet;
+import ru.klokov.servlet.MetricsServlet;
+import ru.klokov.servlet.currency.CurrenciesServlet;
+import ru.klokov.servlet.currency.CurrencyServlet;
+import ru.klokov.servlet.exchangeRate.ExchangeRateServlet;
+import ru.klokov.servlet.exchangeRate.ExchangeRatesImportServlet;
+import ru.klokov.servlet.exchangeRate.ExchangeRatesMatrixServlet;
+import ru.klokov.servlet.exchangeRate.ExchangeRatesServlet;
+import ru.klokov.servlet.exchangeRate.ExchangeRatesStreamServlet;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.StartupTimer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class Launcher {
+    private static final List<Class<? extends HttpServlet>> SERVLETS = List.of(
+            CurrenciesServlet.class,
+            CurrencyServlet.class,
+            ExchangeRatesServlet.class,
+            ExchangeRateServlet.class,
+            ExchangeRatesImportServlet.class,
+            ExchangeRatesMatrixServlet.class,
+            ExchangeRatesStreamServlet.class,
+            ExchangeServlet.class,
+            BatchExchangeServlet.class,
+            ExchangeFanoutServlet.class,
+            MetricsServlet.class
+    );
+    private static final List<Class<? extends Filter>> FILTERS = List.of(
+            CompressionFilter.class
+    );
+    private static final List<String> TRAINING_PATHS = List.of(
+            "/exchangeRates",
+            "/exchangeRate/USDEUR",
+            "/exchange?from=USD&to=EUR&amount=10",
+            "/exchange?from=EUR&to=JPY&amount=10.5",
+            "/currency/USD",
+            "/metrics"
+    );
+
+    private final Tomcat tomcat;
+    private final Context context;
+
+    private Launcher(Tomcat tomcat, Context context) {
+        this.tomcat = tomcat;
+        this.context = context;
+    }
+
+    public static void main(String[] args) throws Exception {
+        StartupTimer startupTimer = new StartupTimer();
+        Instant processStart = ProcessHandle.current().info().startInstant().orElse(null);
+        ApplicationProperties properties = new ApplicationProperties();
+        boolean training = properties.getBoolean("launcher.training", false);
+
+        if (!properties.getBoolean("server.jmx", false)) Registry.disableRegistry();
+        Launcher launcher = configure(properties.getInt("server.port", 8080), properties.getInt("server.maxThreads", 200));
+        startupTimer.mark("server.configure");
+
+        launcher.start();
+        startupTimer.mark("server.start");
+
+        launcher.request("/currencies");
+        startupTimer.mark("first.request");
+
+        if (training) {
+            for (String path : TRAINING_PATHS) {
+                launcher.request(path);
+            }
+            startupTimer.mark("training.requests");
+        }
+
+        launcher.report(startupTimer, processStart);
+
+        if (training) {
+            launcher.stop();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(launcher::stop, "shutdown"));
+        launcher.tomcat.getServer().await();
+    }
+
+    private static Launcher configure(int port, int maxThreads) throws IOException {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("currency-exchange").toString());
+        tomcat.setPort(port);
+        Connector connector = tomcat.getConnector();
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+
+        Context context = tomcat.addContext("", null);
+        context.addApplicationListener(ApplicationServletContextListener.class.getName());
+        for (Class<? extends HttpServlet> servletClass : SERVLETS) {
+            addServlet(context, servletClass);
+        }
+        for (Class<? extends Filter> filterClass : FILTERS) {
+            addFilter(context, filterClass);
+        }
+        return new Launcher(tomcat, context);
+    }
+
+    private static void addServlet(Context context, Class<? extends HttpServlet> servletClass) {
+        WebServlet webServlet = servletClass.getAnnotation(WebServlet.class);
+        Wrapper wrapper = Tomcat.addServlet(context, servletClass.getSimpleName(), servletClass.getName());
+        wrapper.setAsyncSupported(webServlet.asyncSupported());
+        wrapper.setLoadOnStartup(1);
+
+        String[] patterns = webServlet.value().length > 0 ? webServlet.value() : webServlet.urlPatterns();
+        for (String pattern : patterns) {
+            context.addServletMappingDecoded(pattern, servletClass.getSimpleName());
+        }
+    }
+
+    private static void addFilter(Context context, Class<? extends Filter> filterClass) {
+        WebFilter webFilter = filterClass.getAnnotation(WebFilter.class);
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(filterClass.getSimpleName());
+        filterDef.setFilterClass(filterClass.getName());
+        filterDef.setAsyncSupported(String.valueOf(webFilter.asyncSupported()));
+        context.addFilterDef(filterDef);
+
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(filterClass.getSimpleName());
+        String[] patterns = webFilter.value().length > 0 ? webFilter.value() : webFilter.urlPatterns();
+        for (String pattern : patterns) {
+            filterMap.addURLPatternDecoded(pattern);
+        }
+        context.addFilterMap(filterMap);
+    }
+
+    private void start() throws LifecycleException {
+        tomcat.start();
+        if (context.getState() != LifecycleState.STARTED) {
+            stop();
+            throw new LifecycleException("Web application failed to start, see the log above!");
+        }
+    }
+
+    private void request(String path) throws IOException {
+        URI uri = URI.create("http://localhost:" + tomcat.getConnector().getLocalPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try (InputStream inputStream = connection.getInputStream()) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void report(StartupTimer startupTimer, Instant processStart) {
+        StartupTimer applicationTimer = (StartupTimer) context.getServletContext().getAttribute("startupTimer");
+        MetricsRegistry metrics = (MetricsRegistry) context.getServletContext().getAttribute("metrics");
+
+        StringBuilder report = new StringBuilder("Startup phases:");
+        for (Map.Entry<String, Long> phase : startupTimer.getPhaseNanos().entrySet()) {
+            appendPhase(report, "", phase.getKey(), phase.getValue());
+            double seconds = phase.getValue() / 1e9;
+            metrics.gauge("startup_phase_seconds", "Time spent in each startup phase.", () -> seconds, "phase", phase.getKey());
+
+            if (phase.getKey().equals("server.start") && applicationTimer != null) {
+                for (Map.Entry<String, Long> applicationPhase : applicationTimer.getPhaseNanos().entrySet()) {
+                    appendPhase(report, "  ", applicationPhase.getKey(), applicationPhase.getValue());
+                }
+            }
+        }
+
+        if (processStart != null) {
+            long sinceProcessStart = System.currentTimeMillis() - processStart.toEpochMilli();
+            metrics.gauge("startup_ready_seconds", "Time from process start to the first served request.",
+                    () -> sinceProcessStart / 1000.0);
+            report.append(String.format("%n  %-24s %6d ms", "process start to ready", sinceProcessStart));
+        }
+        context.getServletContext().log(report.toString());
+    }
+
+    private static void appendPhase(StringBuilder report, String indent, String phase, long nanos) {
+        report.append(String.format("%n  %-24s %6d ms", indent + phase, TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    private void stop() {
+        try {
+            if (tomcat.getServer().getState().isAvailable()) tomcat.stop();
+            tomcat.destroy();
+        } catch (LifecycleException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
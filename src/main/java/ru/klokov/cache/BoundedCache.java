@@ -0,0 +1,97 @@
+package ru.klokov.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BoundedCache<K, V> {
+    private static final long ACCESS_RESOLUTION_NANOS = 1_000_000;
+
+    public enum Eviction {
+        LRU,
+        FIFO
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Eviction eviction;
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public BoundedCache(int maxEntries, long ttlNanos, Eviction eviction) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.eviction = eviction;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+
+        long now = System.nanoTime();
+        if (ttlNanos > 0 && now - entry.loadedAt > ttlNanos) {
+            if (entries.remove(key, entry)) expirations.increment();
+            return null;
+        }
+        // Hot entries are touched at most once per resolution tick, so concurrent readers rarely write the same line.
+        if (eviction == Eviction.LRU && now - entry.lastAccess > ACCESS_RESOLUTION_NANOS) entry.lastAccess = now;
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (maxEntries <= 0) return;
+
+        long now = System.nanoTime();
+        entries.put(key, new Entry<>(value, now, now));
+        if (entries.size() > maxEntries) evict();
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    // Trims to 90% of the bound in one pass so a burst of inserts does not rescan the map on every put.
+    private synchronized void evict() {
+        int excess = entries.size() - maxEntries * 9 / 10;
+        if (excess <= 0) return;
+
+        List<Map.Entry<K, Entry<V>>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+        for (int i = 0; i < excess && i < candidates.size(); i++) {
+            Map.Entry<K, Entry<V>> candidate = candidates.get(i);
+            if (entries.remove(candidate.getKey(), candidate.getValue())) evictions.increment();
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private volatile long lastAccess;
+
+        Entry(V value, long loadedAt, long lastAccess) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
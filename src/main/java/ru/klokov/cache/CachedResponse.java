@@ -0,0 +1,47 @@
+package ru.klokov.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CachedResponse {
+    private final String contentType;
+    private final byte[] body;
+    private final long version;
+    private final Map<String, byte[]> variants = new ConcurrentHashMap<>(2);
+    private volatile long lastAccess;
+
+    public CachedResponse(String contentType, byte[] body, long version, long lastAccess) {
+        this.contentType = contentType;
+        this.body = body;
+        this.version = version;
+        this.lastAccess = lastAccess;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public byte[] getVariant(String encoding) {
+        return variants.get(encoding);
+    }
+
+    public void putVariant(String encoding, byte[] variant) {
+        variants.putIfAbsent(encoding, variant);
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch(long tick) {
+        lastAccess = tick;
+    }
+}
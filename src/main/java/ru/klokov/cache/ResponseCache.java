@@ -0,0 +1,123 @@
+package ru.klokov.cache;
+
+import ru.klokov.dao.DataVersion;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ResponseCache {
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+    private final DataVersion dataVersion;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResponseCache(DataVersion dataVersion, long maxBytes, int maxEntryBytes) {
+        this.dataVersion = dataVersion;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    public CachedResponse get(String key, long version) {
+        CachedResponse cachedResponse = entries.get(key);
+        if (cachedResponse != null && cachedResponse.getVersion() != version) {
+            if (remove(key, cachedResponse)) invalidations.increment();
+            cachedResponse = null;
+        }
+        if (cachedResponse == null) {
+            misses.increment();
+            return null;
+        }
+        cachedResponse.touch(clock.incrementAndGet());
+        hits.increment();
+        return cachedResponse;
+    }
+
+    public void put(String key, long versionAtLoad, String contentType, byte[] body) {
+        if (body.length > maxEntryBytes || body.length > maxBytes) return;
+        if (dataVersion.get() != versionAtLoad) return;
+
+        CachedResponse previous = entries.put(key, new CachedResponse(contentType, body, versionAtLoad, clock.incrementAndGet()));
+        usedBytes.addAndGet(body.length - (previous == null ? 0 : previous.getBody().length));
+
+        // A write that landed between the version check and the put must not leave the stale entry behind.
+        if (dataVersion.get() != versionAtLoad) remove(key);
+        if (usedBytes.get() > maxBytes) evict();
+    }
+
+    public void invalidate(String key) {
+        if (remove(key)) invalidations.increment();
+    }
+
+    public void invalidatePrefix(String prefix) {
+        for (String key : entries.keySet()) {
+            if (key.startsWith(prefix) && remove(key)) invalidations.increment();
+        }
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    private synchronized void evict() {
+        while (usedBytes.get() > maxBytes && !entries.isEmpty()) {
+            String oldestKey = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, CachedResponse> entry : entries.entrySet()) {
+                if (entry.getValue().getLastAccess() < oldestAccess) {
+                    oldestAccess = entry.getValue().getLastAccess();
+                    oldestKey = entry.getKey();
+                }
+            }
+            if (oldestKey != null && remove(oldestKey)) evictions.increment();
+        }
+    }
+
+    private boolean remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed == null) return false;
+        usedBytes.addAndGet(-removed.getBody().length);
+        return true;
+    }
+
+    private boolean remove(String key, CachedResponse expected) {
+        if (!entries.remove(key, expected)) return false;
+        usedBytes.addAndGet(-expected.getBody().length);
+        return true;
+    }
+}
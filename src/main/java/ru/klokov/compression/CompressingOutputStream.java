@@ -0,0 +1,111 @@
+package ru.klokov.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+class CompressingOutputStream extends OutputStream {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ResponseCompressor compressor;
+    private final ContentEncoding encoding;
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final byte[] chunk = new byte[8192];
+    private long bytesIn;
+    private long bytesOut;
+    private long compressNanos;
+    private boolean closed;
+
+    CompressingOutputStream(ResponseCompressor compressor, ContentEncoding encoding, int level, OutputStream out) throws IOException {
+        this.compressor = compressor;
+        this.encoding = encoding;
+        this.out = out;
+        this.deflater = new Deflater(level, encoding == ContentEncoding.GZIP);
+        this.crc = encoding == ContentEncoding.GZIP ? new CRC32() : null;
+
+        if (crc != null) {
+            out.write(GZIP_HEADER);
+            bytesOut += GZIP_HEADER.length;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (len == 0) return;
+
+        long start = System.nanoTime();
+        if (crc != null) crc.update(b, off, len);
+        deflater.setInput(b, off, len);
+        compressNanos += System.nanoTime() - start;
+        bytesIn += len;
+
+        while (!deflater.needsInput()) {
+            deflate(Deflater.NO_FLUSH);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (closed) return;
+
+        int length;
+        do {
+            length = deflate(Deflater.SYNC_FLUSH);
+        } while (length == chunk.length);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(Deflater.NO_FLUSH);
+            }
+            if (crc != null) writeGzipTrailer();
+        } finally {
+            deflater.end();
+            compressor.recordCompressed(encoding, bytesIn, bytesOut, compressNanos);
+            out.close();
+        }
+    }
+
+    private int deflate(int flushMode) throws IOException {
+        long start = System.nanoTime();
+        int length = deflater.deflate(chunk, 0, chunk.length, flushMode);
+        compressNanos += System.nanoTime() - start;
+
+        if (length > 0) {
+            out.write(chunk, 0, length);
+            bytesOut += length;
+        }
+        return length;
+    }
+
+    private void writeGzipTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, (int) bytesIn);
+        out.write(trailer);
+        bytesOut += trailer.length;
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+}
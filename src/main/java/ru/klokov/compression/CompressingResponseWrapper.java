@@ -0,0 +1,187 @@
+package ru.klokov.compression;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+public class CompressingResponseWrapper extends HttpServletResponseWrapper {
+    private final ResponseCompressor compressor;
+    private final ContentEncoding encoding;
+    private CompressingServletOutputStream outputStream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+
+    public CompressingResponseWrapper(HttpServletResponse response, ResponseCompressor compressor, ContentEncoding encoding) {
+        super(response);
+        this.compressor = compressor;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+        if (outputStream == null) outputStream = new CompressingServletOutputStream(super.getOutputStream());
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream == null) outputStream = new CompressingServletOutputStream(super.getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (outputStream != null && outputStream.isIdentity()) super.setContentLengthLong(len);
+        else contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (name.equalsIgnoreCase("Content-Length")) setContentLengthLong(Long.parseLong(value));
+        else super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (name.equalsIgnoreCase("Content-Length")) setContentLengthLong(Long.parseLong(value));
+        else super.addHeader(name, value);
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return super.isCommitted() || (outputStream != null && outputStream.isCompressing());
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) writer.flush();
+        if (outputStream != null) outputStream.flushBuffered();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (outputStream != null) outputStream.resetBuffer();
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        if (outputStream != null) outputStream.resetBuffer();
+        contentLength = -1;
+        super.reset();
+    }
+
+    public void finish() throws IOException {
+        if (writer != null) writer.close();
+        else if (outputStream != null) outputStream.close();
+        else if (contentLength >= 0) super.setContentLengthLong(contentLength);
+    }
+
+    private final class CompressingServletOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream target;
+        private boolean compressing;
+        private boolean closed;
+
+        private CompressingServletOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        private boolean isIdentity() {
+            return target != null && !compressing;
+        }
+
+        private boolean isCompressing() {
+            return compressing;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+
+            if (target == null) {
+                if (buffer.size() + len < compressor.getMinBytes()) {
+                    buffer.write(b, off, len);
+                    return;
+                }
+                start(true);
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+
+            if (target == null) start(false);
+            closed = true;
+            target.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+
+        private void flushBuffered() throws IOException {
+            if (target == null) start(false);
+            target.flush();
+        }
+
+        private void resetBuffer() {
+            if (target == null) buffer.reset();
+        }
+
+        private void start(boolean thresholdReached) throws IOException {
+            String contentEncoding = getHeader("Content-Encoding");
+            compressing = thresholdReached && compressor.isCompressible(getContentType(), contentEncoding);
+
+            if (compressing) {
+                setHeader("Content-Encoding", encoding.getToken());
+                if (containsHeader("ETag")) setHeader("ETag", encoding.eTag(getHeader("ETag")));
+                target = compressor.compress(encoding, out);
+            } else {
+                if (!thresholdReached && contentEncoding == null) compressor.recordSkipped();
+                if (contentLength >= 0) CompressingResponseWrapper.super.setContentLengthLong(contentLength);
+                else if (!thresholdReached) CompressingResponseWrapper.super.setContentLengthLong(buffer.size());
+                target = out;
+            }
+
+            buffer.writeTo(target);
+            buffer = null;
+        }
+    }
+}
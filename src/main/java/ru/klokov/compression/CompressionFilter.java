@@ -0,0 +1,44 @@
+package ru.klokov.compression;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+    private ResponseCompressor responseCompressor;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        responseCompressor = (ResponseCompressor) filterConfig.getServletContext().getAttribute("responseCompressor");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (responseCompressor == null || !(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        resp.addHeader("Vary", "Accept-Encoding");
+        ContentEncoding encoding = ContentEncoding.negotiate(req.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            chain.doFilter(req, resp);
+            return;
+        }
+
+        CompressingResponseWrapper compressingResponse = new CompressingResponseWrapper(resp, responseCompressor, encoding);
+        chain.doFilter(req, compressingResponse);
+
+        // Asynchronous responses are finished by the servlet closing its stream before the async context completes.
+        if (!req.isAsyncStarted()) compressingResponse.finish();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.klokov.compression;
+
+public enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String eTag(String eTag) {
+        if (eTag == null || !eTag.endsWith("\"")) return eTag;
+        return eTag.substring(0, eTag.length() - 1) + "-" + token + "\"";
+    }
+
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return null;
+
+        ContentEncoding selected = null;
+        double selectedQuality = 0;
+        double wildcardQuality = -1;
+        double gzipQuality = -1;
+        double deflateQuality = -1;
+
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double quality = quality(tokens);
+
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzipQuality = quality;
+                case "deflate" -> deflateQuality = quality;
+                case "*" -> wildcardQuality = quality;
+                default -> {
+                }
+            }
+        }
+
+        if (gzipQuality < 0) gzipQuality = wildcardQuality;
+        if (deflateQuality < 0) deflateQuality = wildcardQuality;
+        if (gzipQuality > selectedQuality) {
+            selected = GZIP;
+            selectedQuality = gzipQuality;
+        }
+        if (deflateQuality > selectedQuality) selected = DEFLATE;
+        return selected;
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (!parameter.startsWith("q=")) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.klokov.compression;
+
+import ru.klokov.cache.CachedResponse;
+import ru.klokov.metrics.LatencyHistogram;
+import ru.klokov.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ResponseCompressor {
+    private static final List<String> INCOMPRESSIBLE_TYPES = List.of(
+            "text/event-stream", "image/", "audio/", "video/", "application/zip", "application/gzip"
+    );
+
+    private final int minBytes;
+    private final int level;
+    private final Map<ContentEncoding, LongAdder> compressedResponses = new EnumMap<>(ContentEncoding.class);
+    private final Map<ContentEncoding, LongAdder> reusedResponses = new EnumMap<>(ContentEncoding.class);
+    private final Map<ContentEncoding, LongAdder> bytesIn = new EnumMap<>(ContentEncoding.class);
+    private final Map<ContentEncoding, LongAdder> bytesSaved = new EnumMap<>(ContentEncoding.class);
+    private final Map<ContentEncoding, LatencyHistogram> compressTime = new EnumMap<>(ContentEncoding.class);
+    private final LongAdder skippedResponses;
+
+    public ResponseCompressor(int minBytes, int level, MetricsRegistry metrics) {
+        this.minBytes = minBytes;
+        this.level = level;
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            String token = encoding.getToken();
+            compressedResponses.put(encoding, metrics.counter("http_compression_responses_total",
+                    "Responses compressed on the fly, by encoding.", "encoding", token));
+            reusedResponses.put(encoding, metrics.counter("http_compression_variant_reuses_total",
+                    "Responses served from an already compressed cached variant, by encoding.", "encoding", token));
+            bytesIn.put(encoding, metrics.counter("http_compression_bytes_in_total",
+                    "Uncompressed bytes of compressed responses, by encoding.", "encoding", token));
+            bytesSaved.put(encoding, metrics.counter("http_compression_bytes_saved_total",
+                    "Bytes kept off the wire by compression, by encoding.", "encoding", token));
+            compressTime.put(encoding, metrics.histogram("http_compression_cpu_seconds",
+                    "Time spent inside the compressor per compressed response, by encoding.", "encoding", token));
+        }
+        skippedResponses = metrics.counter("http_compression_skipped_total",
+                "Responses sent uncompressed because they were below the size threshold.");
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public boolean isCompressible(String contentType, String contentEncoding) {
+        if (contentEncoding != null) return false;
+        if (contentType == null) return true;
+
+        for (String type : INCOMPRESSIBLE_TYPES) {
+            if (contentType.startsWith(type)) return false;
+        }
+        return true;
+    }
+
+    public ContentEncoding select(String acceptEncoding, String contentType, int length) {
+        ContentEncoding encoding = ContentEncoding.negotiate(acceptEncoding);
+        if (encoding == null) return null;
+        if (!isCompressible(contentType, null)) return null;
+        if (length < minBytes) {
+            skippedResponses.increment();
+            return null;
+        }
+        return encoding;
+    }
+
+    public OutputStream compress(ContentEncoding encoding, OutputStream out) throws IOException {
+        return new CompressingOutputStream(this, encoding, level, out);
+    }
+
+    public byte[] compress(ContentEncoding encoding, byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream outputStream = compress(encoding, compressed)) {
+            outputStream.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    public byte[] variant(CachedResponse cachedResponse, ContentEncoding encoding) {
+        byte[] variant = cachedResponse.getVariant(encoding.getToken());
+        if (variant != null) {
+            recordReused(encoding, cachedResponse.getBody().length, variant.length);
+            return variant;
+        }
+
+        variant = compress(encoding, cachedResponse.getBody());
+        cachedResponse.putVariant(encoding.getToken(), variant);
+        return variant;
+    }
+
+    void recordSkipped() {
+        skippedResponses.increment();
+    }
+
+    void recordCompressed(ContentEncoding encoding, long uncompressedBytes, long compressedBytes, long compressNanos) {
+        compressedResponses.get(encoding).increment();
+        bytesIn.get(encoding).add(uncompressedBytes);
+        bytesSaved.get(encoding).add(uncompressedBytes - compressedBytes);
+        compressTime.get(encoding).record(compressNanos);
+    }
+
+    private void recordReused(ContentEncoding encoding, long uncompressedBytes, long compressedBytes) {
+        reusedResponses.get(encoding).increment();
+        bytesIn.get(encoding).add(uncompressedBytes);
+        bytesSaved.get(encoding).add(uncompressedBytes - compressedBytes);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.klokov.dao;
+
+import ru.klokov.cache.BoundedCache;
+import ru.klokov.exception.DatabaseException;
+import ru.klokov.model.Currency;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CachingCurrencyDAO implements ICurrencyDAO {
+    private final ICurrencyDAO delegate;
+    private final BoundedCache<String, Currency> byCode;
+    private final BoundedCache<Long, Currency> byId;
+    private final BoundedCache<String, Boolean> missingCodes;
+    private final AtomicLong saveGeneration = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public CachingCurrencyDAO(ICurrencyDAO delegate, int maxEntries, long ttlNanos, int negativeMaxEntries,
+                              long negativeTtlNanos, BoundedCache.Eviction eviction) {
+        this.delegate = delegate;
+        this.byCode = new BoundedCache<>(maxEntries, ttlNanos, eviction);
+        this.byId = new BoundedCache<>(maxEntries, ttlNanos, eviction);
+        this.missingCodes = new BoundedCache<>(negativeMaxEntries, negativeTtlNanos, eviction);
+    }
+
+    @Override
+    public List<Currency> findAll() throws DatabaseException {
+        long start = System.nanoTime();
+        List<Currency> currencies = delegate.findAll();
+        loadNanos.add(System.nanoTime() - start);
+
+        for (Currency currency : currencies) {
+            cache(currency);
+        }
+        return currencies;
+    }
+
+    @Override
+    public List<Currency> findPage(String afterCode, int limit) throws DatabaseException {
+        long start = System.nanoTime();
+        List<Currency> currencies = delegate.findPage(afterCode, limit);
+        loadNanos.add(System.nanoTime() - start);
+
+        for (Currency currency : currencies) {
+            cache(currency);
+        }
+        return currencies;
+    }
+
+    @Override
+    public Optional<Currency> findById(Long id) throws DatabaseException {
+        Currency cached = byId.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Optional<Currency> currency = delegate.findById(id);
+        loadNanos.add(System.nanoTime() - start);
+
+        currency.ifPresent(this::cache);
+        return currency;
+    }
+
+    @Override
+    public Optional<Currency> findByCode(String code) throws DatabaseException {
+        Currency cached = byCode.get(code);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        if (missingCodes.get(code) != null) {
+            negativeHits.increment();
+            return Optional.empty();
+        }
+
+        misses.increment();
+        long generation = saveGeneration.get();
+        long start = System.nanoTime();
+        Optional<Currency> currency = delegate.findByCode(code);
+        loadNanos.add(System.nanoTime() - start);
+
+        if (currency.isPresent()) {
+            cache(currency.get());
+        } else if (saveGeneration.get() == generation) {
+            missingCodes.put(code, Boolean.TRUE);
+            // A save that landed between the generation check and the put must not stay hidden behind the negative entry.
+            if (saveGeneration.get() != generation) missingCodes.invalidate(code);
+        }
+        return currency;
+    }
+
+    @Override
+    public Currency save(Currency currency) throws DatabaseException {
+        try {
+            Currency saved = delegate.save(currency);
+            if (saved.getId() != null) cache(saved);
+            return saved;
+        } finally {
+            saveGeneration.incrementAndGet();
+            missingCodes.invalidate(currency.getCode());
+        }
+    }
+
+    public void invalidateAll() {
+        byCode.invalidateAll();
+        byId.invalidateAll();
+        missingCodes.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getLoadSeconds() {
+        return loadNanos.sum() / 1e9;
+    }
+
+    public int getSize() {
+        return byCode.getSize() + byId.getSize();
+    }
+
+    public int getNegativeSize() {
+        return missingCodes.getSize();
+    }
+
+    public long getEvictions() {
+        return byCode.getEvictions() + byId.getEvictions() + missingCodes.getEvictions();
+    }
+
+    public long getExpirations() {
+        return byCode.getExpirations() + byId.getExpirations() + missingCodes.getExpirations();
+    }
+
+    private void cache(Currency currency) {
+        byCode.put(currency.getCode(), currency);
+        byId.put(currency.getId(), currency);
+        missingCodes.invalidate(currency.getCode());
+    }
+}
@@ -1,6 +1,8 @@
 package ru.klokov.dao;
 
 import ru.klokov.exception.DatabaseException;
+import ru.klokov.metrics.MetricsRegistry;
+import ru.klokov.metrics.QueryTimer;
 import ru.klokov.model.Currency;
 
 import javax.sql.DataSource;
@@ -11,9 +13,23 @@ import java.util.Optional;
 
 public class CurrencyDAO implements ICurrencyDAO {
     private final DataSource dataSource;
+    private final DataSource writeDataSource;
+    private final DataVersion dataVersion;
+    private final QueryTimer queryTimer;
 
     public CurrencyDAO(DataSource dataSource) {
+        this(dataSource, dataSource, new DataVersion());
+    }
+
+    public CurrencyDAO(DataSource dataSource, DataSource writeDataSource, DataVersion dataVersion) {
+        this(dataSource, writeDataSource, dataVersion, new MetricsRegistry());
+    }
+
+    public CurrencyDAO(DataSource dataSource, DataSource writeDataSource, DataVersion dataVersion, MetricsRegistry metrics) {
         this.dataSource = dataSource;
+        this.writeDataSource = writeDataSource;
+        this.dataVersion = dataVersion;
+        this.queryTimer = new QueryTimer(metrics, "CurrencyDAO");
     }
 
     @Override
@@ -21,6 +37,7 @@ public class CurrencyDAO implements ICurrencyDAO {
         String sql = "SELECT * FROM currencies";
         List<Currency> currencies;
 
+        long start = System.nanoTime();
         try (Connection connection = dataSource.getConnection();
              Statement statement = connection.createStatement()) {
             try (ResultSet resultSet = statement.executeQuery(sql)) {
@@ -38,6 +55,43 @@ public class CurrencyDAO implements ICurrencyDAO {
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findAll", start);
+        }
+
+        return currencies;
+    }
+
+    @Override
+    public List<Currency> findPage(String afterCode, int limit) throws DatabaseException {
+        String sql = afterCode == null
+                ? "SELECT * FROM currencies ORDER BY code LIMIT ?"
+                : "SELECT * FROM currencies WHERE code > ? ORDER BY code LIMIT ?";
+        List<Currency> currencies = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            int parameter = 1;
+            if (afterCode != null) preparedStatement.setString(parameter++, afterCode);
+            preparedStatement.setInt(parameter, limit);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    currencies.add(
+                            new Currency(
+                                    resultSet.getLong("id"),
+                                    resultSet.getString("code"),
+                                    resultSet.getString("full_name"),
+                                    resultSet.getString("sign")
+                            )
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findPage", start);
         }
 
         return currencies;
@@ -48,6 +102,7 @@ public class CurrencyDAO implements ICurrencyDAO {
         String sql = "SELECT * FROM currencies WHERE id = ?";
         Currency currency = null;
 
+        long start = System.nanoTime();
         try (Connection connection = dataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setLong(1, id);
@@ -63,6 +118,8 @@ public class CurrencyDAO implements ICurrencyDAO {
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findById", start);
         }
 
         return Optional.ofNullable(currency);
@@ -73,6 +130,7 @@ public class CurrencyDAO implements ICurrencyDAO {
         String sql = "SELECT * FROM currencies WHERE code = ?";
         Currency currency = null;
 
+        long start = System.nanoTime();
         try (Connection connection = dataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, code);
@@ -88,6 +146,8 @@ public class CurrencyDAO implements ICurrencyDAO {
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findByCode", start);
         }
 
         return Optional.ofNullable(currency);
@@ -97,13 +157,15 @@ public class CurrencyDAO implements ICurrencyDAO {
     public Currency save(Currency currency) throws DatabaseException {
         String sql = "INSERT INTO currencies (code, full_name, sign) VALUES (?, ?, ?)";
 
-        try (Connection connection = dataSource.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, currency.getCode());
             preparedStatement.setString(2, currency.getFullName());
             preparedStatement.setString(3, currency.getSign());
 
             int rows = preparedStatement.executeUpdate();
+            dataVersion.bump();
 
             if (rows > 0) {
                 try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
@@ -114,6 +176,8 @@ public class CurrencyDAO implements ICurrencyDAO {
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("save", start);
         }
 
         return currency;
@@ -0,0 +1,15 @@
+package ru.klokov.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DataVersion {
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long get() {
+        return version.get();
+    }
+
+    public long bump() {
+        return version.incrementAndGet();
+    }
+}
@@ -1,21 +1,46 @@
 package ru.klokov.dao;
 
 import ru.klokov.exception.DatabaseException;
+import ru.klokov.metrics.MetricsRegistry;
+import ru.klokov.metrics.QueryTimer;
 import ru.klokov.model.Currency;
 import ru.klokov.model.ExchangeRate;
+import ru.klokov.response.ExchangeRateResponse;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class ExchangeRateDAO implements IExchangeRateDAO {
+    private static final int BATCH_SIZE = 1000;
     private final DataSource dataSource;
+    private final DataSource writeDataSource;
+    private final DataVersion dataVersion;
+    private final QueryTimer queryTimer;
 
     public ExchangeRateDAO(DataSource dataSource) {
+        this(dataSource, dataSource, new DataVersion());
+    }
+
+    public ExchangeRateDAO(DataSource dataSource, DataSource writeDataSource, DataVersion dataVersion) {
+        this(dataSource, writeDataSource, dataVersion, new MetricsRegistry());
+    }
+
+    public ExchangeRateDAO(DataSource dataSource, DataSource writeDataSource, DataVersion dataVersion, MetricsRegistry metrics) {
         this.dataSource = dataSource;
+        this.writeDataSource = writeDataSource;
+        this.dataVersion = dataVersion;
+        this.queryTimer = new QueryTimer(metrics, "ExchangeRateDAO");
     }
 
     @Override
@@ -23,56 +48,217 @@ public class ExchangeRateDAO implements IExchangeRateDAO {
         String sql = "SELECT * FROM exchange_rates";
         List<ExchangeRate> exchangeRates = new ArrayList<>();
 
+        long start = System.nanoTime();
         try (Connection connection = dataSource.getConnection();
              Statement statement = connection.createStatement()) {
-            ResultSet resultSet = statement.executeQuery(sql);
-            while (resultSet.next()) {
-                exchangeRates.add(
-                        new ExchangeRate(
-                                resultSet.getLong("id"),
-                                resultSet.getLong("base_currency_id"),
-                                resultSet.getLong("target_currency_id"),
-                                resultSet.getBigDecimal("rate")
-                        ));
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                while (resultSet.next()) {
+                    exchangeRates.add(
+                            new ExchangeRate(
+                                    resultSet.getLong("id"),
+                                    resultSet.getLong("base_currency_id"),
+                                    resultSet.getLong("target_currency_id"),
+                                    resultSet.getBigDecimal("rate")
+                            ));
+                }
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findAll", start);
         }
         return exchangeRates;
     }
 
+    @Override
+    public void findAllWithCurrencies(Consumer<ExchangeRateResponse> consumer) throws DatabaseException {
+        String sql = "SELECT er.id, er.rate, " +
+                "b.id AS base_id, b.code AS base_code, b.full_name AS base_full_name, b.sign AS base_sign, " +
+                "t.id AS target_id, t.code AS target_code, t.full_name AS target_full_name, t.sign AS target_sign " +
+                "FROM exchange_rates er " +
+                "JOIN currencies b ON b.id = er.base_currency_id " +
+                "JOIN currencies t ON t.id = er.target_currency_id " +
+                "ORDER BY er.id";
+        Map<Long, Currency> currencies = new HashMap<>();
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new ExchangeRateResponse(
+                            resultSet.getLong("id"),
+                            currency(resultSet, "base_", currencies),
+                            currency(resultSet, "target_", currencies),
+                            resultSet.getBigDecimal("rate")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findAllWithCurrencies", start);
+        }
+    }
+
+    @Override
+    public void findPageWithCurrencies(ExchangeRatePageQuery query, Consumer<ExchangeRateResponse> consumer)
+            throws DatabaseException {
+        StringBuilder sql = new StringBuilder("SELECT er.id, er.rate, " +
+                "b.id AS base_id, b.code AS base_code, b.full_name AS base_full_name, b.sign AS base_sign, " +
+                "t.id AS target_id, t.code AS target_code, t.full_name AS target_full_name, t.sign AS target_sign " +
+                "FROM exchange_rates er " +
+                "JOIN currencies b ON b.id = er.base_currency_id " +
+                "JOIN currencies t ON t.id = er.target_currency_id " +
+                "WHERE 1 = 1");
+        List<String> codes = new ArrayList<>();
+
+        if (query.getBaseCurrencyCode() != null) {
+            sql.append(" AND er.base_currency_id = (SELECT id FROM currencies WHERE code = ?)");
+            codes.add(query.getBaseCurrencyCode());
+        }
+        if (query.getTargetCurrencyCode() != null) {
+            sql.append(" AND er.target_currency_id = (SELECT id FROM currencies WHERE code = ?)");
+            codes.add(query.getTargetCurrencyCode());
+        }
+        if (query.getAfterBaseCurrencyCode() != null && query.getAfterBaseCurrencyCode().equals(query.getBaseCurrencyCode())) {
+            sql.append(" AND er.target_currency_id > (SELECT id FROM currencies WHERE code = ?)");
+            codes.add(query.getAfterTargetCurrencyCode());
+        } else if (query.getAfterBaseCurrencyCode() != null) {
+            sql.append(" AND (er.base_currency_id, er.target_currency_id) > " +
+                    "((SELECT id FROM currencies WHERE code = ?), (SELECT id FROM currencies WHERE code = ?))");
+            codes.add(query.getAfterBaseCurrencyCode());
+            codes.add(query.getAfterTargetCurrencyCode());
+        }
+        sql.append(" ORDER BY er.base_currency_id, er.target_currency_id LIMIT ?");
+        Map<Long, Currency> currencies = new HashMap<>();
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            for (String code : codes) {
+                preparedStatement.setString(parameter++, code);
+            }
+            preparedStatement.setInt(parameter, query.getLimit());
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new ExchangeRateResponse(
+                            resultSet.getLong("id"),
+                            currency(resultSet, "base_", currencies),
+                            currency(resultSet, "target_", currencies),
+                            resultSet.getBigDecimal("rate")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findPageWithCurrencies", start);
+        }
+    }
+
     @Override
     public Optional<ExchangeRate> findByCurrencyPair(Currency baseCurrency, Currency targetCurrency) throws DatabaseException {
         String sql = "SELECT * FROM exchange_rates WHERE base_currency_id = ? AND target_currency_id = ?";
         ExchangeRate exchangeRate = null;
 
+        long start = System.nanoTime();
         try (Connection connection = dataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setLong(1, baseCurrency.getId());
             preparedStatement.setLong(2, targetCurrency.getId());
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                exchangeRate = new ExchangeRate(
-                        resultSet.getLong("id"),
-                        resultSet.getLong("base_currency_id"),
-                        resultSet.getLong("target_currency_id"),
-                        resultSet.getBigDecimal("rate")
-                );
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    exchangeRate = new ExchangeRate(
+                            resultSet.getLong("id"),
+                            resultSet.getLong("base_currency_id"),
+                            resultSet.getLong("target_currency_id"),
+                            resultSet.getBigDecimal("rate")
+                    );
+                }
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findByCurrencyPair", start);
         }
 
         return Optional.ofNullable(exchangeRate);
     }
 
+    @Override
+    public Optional<BigDecimal> findRateAsOf(Currency baseCurrency, Currency targetCurrency, Instant asOf) throws DatabaseException {
+        String sql = "SELECT rate FROM exchange_rate_history " +
+                "WHERE base_currency_id = ? AND target_currency_id = ? AND effective_time <= ? " +
+                "ORDER BY effective_time DESC LIMIT 1";
+        BigDecimal rate = null;
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setLong(1, baseCurrency.getId());
+            preparedStatement.setLong(2, targetCurrency.getId());
+            preparedStatement.setLong(3, asOf.toEpochMilli());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    rate = resultSet.getBigDecimal("rate");
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findRateAsOf", start);
+        }
+
+        return Optional.ofNullable(rate);
+    }
+
+    @Override
+    public List<ExchangeRate> findAllAsOf(Instant asOf) throws DatabaseException {
+        String sql = "SELECT er.id, er.base_currency_id, er.target_currency_id, " +
+                "(SELECT h.rate FROM exchange_rate_history h " +
+                "WHERE h.base_currency_id = er.base_currency_id AND h.target_currency_id = er.target_currency_id " +
+                "AND h.effective_time <= ? ORDER BY h.effective_time DESC LIMIT 1) AS rate " +
+                "FROM exchange_rates er";
+        List<ExchangeRate> exchangeRates = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setLong(1, asOf.toEpochMilli());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    BigDecimal rate = resultSet.getBigDecimal("rate");
+                    if (rate == null) continue;
+                    exchangeRates.add(new ExchangeRate(
+                            resultSet.getLong("id"),
+                            resultSet.getLong("base_currency_id"),
+                            resultSet.getLong("target_currency_id"),
+                            rate
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("findAllAsOf", start);
+        }
+
+        return exchangeRates;
+    }
+
     @Override
     public ExchangeRate save(ExchangeRate exchangeRate) throws DatabaseException {
         String sql = "INSERT INTO exchange_rates (base_currency_id, target_currency_id, rate) VALUES (?, ?, ?)";
         int rows;
 
-        try (Connection connection = dataSource.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setLong(1, exchangeRate.getBaseCurrencyId());
@@ -80,15 +266,19 @@ public class ExchangeRateDAO implements IExchangeRateDAO {
             preparedStatement.setBigDecimal(3, exchangeRate.getRate());
 
             rows = preparedStatement.executeUpdate();
+            dataVersion.bump();
 
             if (rows != 0) {
-                ResultSet keys = preparedStatement.getGeneratedKeys();
-                if (keys.next()) {
-                    exchangeRate.setId(keys.getLong(1));
+                try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        exchangeRate.setId(keys.getLong(1));
+                    }
                 }
             }
         } catch (SQLException e) {
             throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("save", start);
         }
 
         return exchangeRate;
@@ -98,7 +288,8 @@ public class ExchangeRateDAO implements IExchangeRateDAO {
     public ExchangeRate update(ExchangeRate exchangeRate, BigDecimal newRate) throws DatabaseException {
         String sql = "UPDATE exchange_rates SET base_currency_id = ?, target_currency_id = ?, rate = ? WHERE id = ?";
 
-        try (Connection connection = dataSource.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setLong(1, exchangeRate.getBaseCurrencyId());
@@ -107,12 +298,114 @@ public class ExchangeRateDAO implements IExchangeRateDAO {
             preparedStatement.setLong(4, exchangeRate.getId());
 
             preparedStatement.executeUpdate();
+            dataVersion.bump();
 
             exchangeRate.setRate(newRate);
         } catch (SQLException e) {
             throw new DatabaseException(e.getMessage());
+        } finally {
+            queryTimer.record("update", start);
         }
 
         return exchangeRate;
     }
+
+    @Override
+    public int upsertAll(Collection<ExchangeRate> exchangeRates) throws DatabaseException {
+        String existingSql = "SELECT base_currency_id, target_currency_id FROM exchange_rates";
+        String upsertSql = "INSERT INTO exchange_rates (base_currency_id, target_currency_id, rate) VALUES (?, ?, ?) " +
+                "ON CONFLICT(base_currency_id, target_currency_id) DO UPDATE SET rate = excluded.rate";
+        int inserted = 0;
+
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Set<Long> existingPairs = new HashSet<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(existingSql)) {
+                    while (resultSet.next()) {
+                        existingPairs.add(pairKey(resultSet.getLong(1), resultSet.getLong(2)));
+                    }
+                }
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(upsertSql)) {
+                    int batched = 0;
+                    for (ExchangeRate exchangeRate : exchangeRates) {
+                        preparedStatement.setLong(1, exchangeRate.getBaseCurrencyId());
+                        preparedStatement.setLong(2, exchangeRate.getTargetCurrencyId());
+                        preparedStatement.setBigDecimal(3, exchangeRate.getRate());
+                        preparedStatement.addBatch();
+
+                        if (!existingPairs.contains(pairKey(exchangeRate.getBaseCurrencyId(), exchangeRate.getTargetCurrencyId())))
+                            inserted++;
+                        if (++batched % BATCH_SIZE == 0) preparedStatement.executeBatch();
+                    }
+                    preparedStatement.executeBatch();
+                }
+
+                connection.commit();
+                dataVersion.bump();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error!");
+        } finally {
+            queryTimer.record("upsertAll", start);
+        }
+
+        return inserted;
+    }
+
+    @Override
+    public void updateAll(Collection<ExchangeRate> exchangeRates) throws DatabaseException {
+        String sql = "UPDATE exchange_rates SET rate = ? WHERE id = ?";
+
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                int batched = 0;
+                for (ExchangeRate exchangeRate : exchangeRates) {
+                    preparedStatement.setBigDecimal(1, exchangeRate.getRate());
+                    preparedStatement.setLong(2, exchangeRate.getId());
+                    preparedStatement.addBatch();
+
+                    if (++batched % BATCH_SIZE == 0) preparedStatement.executeBatch();
+                }
+                preparedStatement.executeBatch();
+
+                connection.commit();
+                dataVersion.bump();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException(e.getMessage());
+        } finally {
+            queryTimer.record("updateAll", start);
+        }
+    }
+
+    private static long pairKey(long baseCurrencyId, long targetCurrencyId) {
+        return (baseCurrencyId << 32) | (targetCurrencyId & 0xFFFFFFFFL);
+    }
+
+    private Currency currency(ResultSet resultSet, String prefix, Map<Long, Currency> currencies) throws SQLException {
+        long id = resultSet.getLong(prefix + "id");
+        Currency currency = currencies.get(id);
+        if (currency == null) {
+            currency = new Currency(
+                    id,
+                    resultSet.getString(prefix + "code"),
+                    resultSet.getString(prefix + "full_name"),
+                    resultSet.getString(prefix + "sign")
+            );
+            currencies.put(id, currency);
+        }
+        return currency;
+    }
 }
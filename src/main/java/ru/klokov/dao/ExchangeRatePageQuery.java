@@ -0,0 +1,38 @@
+package ru.klokov.dao;
+
+public class ExchangeRatePageQuery {
+    private final String baseCurrencyCode;
+    private final String targetCurrencyCode;
+    private final String afterBaseCurrencyCode;
+    private final String afterTargetCurrencyCode;
+    private final int limit;
+
+    public ExchangeRatePageQuery(String baseCurrencyCode, String targetCurrencyCode, String afterBaseCurrencyCode,
+                                 String afterTargetCurrencyCode, int limit) {
+        this.baseCurrencyCode = baseCurrencyCode;
+        this.targetCurrencyCode = targetCurrencyCode;
+        this.afterBaseCurrencyCode = afterBaseCurrencyCode;
+        this.afterTargetCurrencyCode = afterTargetCurrencyCode;
+        this.limit = limit;
+    }
+
+    public String getBaseCurrencyCode() {
+        return baseCurrencyCode;
+    }
+
+    public String getTargetCurrencyCode() {
+        return targetCurrencyCode;
+    }
+
+    public String getAfterBaseCurrencyCode() {
+        return afterBaseCurrencyCode;
+    }
+
+    public String getAfterTargetCurrencyCode() {
+        return afterTargetCurrencyCode;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,304 @@
+package ru.klokov.dao;
+
+import ru.klokov.exception.DatabaseException;
+import ru.klokov.exception.ServiceUnavailableException;
+import ru.klokov.metrics.LatencyHistogram;
+import ru.klokov.metrics.MetricsRegistry;
+import ru.klokov.model.ExchangeRate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ExchangeRateWriteQueue implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ExchangeRateWriteQueue.class.getName());
+
+    public enum Durability {
+        ASYNC,
+        COMMIT
+    }
+
+    private final IExchangeRateDAO exchangeRateDAO;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final int maxQueueDepth;
+    private final long submitTimeoutNanos;
+    private final long maxRetryBackoffNanos;
+    private final Durability durability;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread writer;
+    private final LatencyHistogram flushDuration;
+    private final LatencyHistogram commitLag;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private Map<Long, ExchangeRate> pending = new LinkedHashMap<>();
+    private CompletableFuture<Void> nextFlush = new CompletableFuture<>();
+    private long oldestPendingNanos;
+    private int reserved;
+    private int consecutiveFailures;
+    private boolean flushNow;
+    private boolean closed;
+
+    public ExchangeRateWriteQueue(IExchangeRateDAO exchangeRateDAO, long flushIntervalMillis, int maxBatchSize,
+                                  int maxQueueDepth, long submitTimeoutMillis, long maxRetryBackoffMillis,
+                                  Durability durability, MetricsRegistry metrics) {
+        this.exchangeRateDAO = exchangeRateDAO;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueueDepth = maxQueueDepth;
+        this.submitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(submitTimeoutMillis);
+        this.maxRetryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxRetryBackoffMillis);
+        this.durability = durability;
+        this.flushDuration = metrics.histogram("rate_write_behind_flush_duration_seconds",
+                "Time to commit one batch of queued rate updates.");
+        this.commitLag = metrics.histogram("rate_write_behind_commit_lag_seconds",
+                "Time from the oldest update in a batch being queued to the batch being committed.");
+        this.writer = Thread.ofPlatform().name("rate-writer").daemon().start(this::run);
+    }
+
+    public void submit(ExchangeRate exchangeRate) throws DatabaseException, ServiceUnavailableException {
+        reserve(exchangeRate);
+        awaitDurability(enqueue(exchangeRate));
+    }
+
+    // Waits for room before the caller takes the snapshot lock, so the matching enqueue never blocks under it.
+    public void reserve(ExchangeRate exchangeRate) throws DatabaseException, ServiceUnavailableException {
+        lock.lock();
+        try {
+            if (closed) throw new DatabaseException("Rate write queue is closed!");
+
+            long remaining = submitTimeoutNanos;
+            while (pending.size() + reserved >= maxQueueDepth && !pending.containsKey(exchangeRate.getId())) {
+                if (remaining <= 0)
+                    throw new ServiceUnavailableException("Rate write queue is full, try again later!");
+
+                flushNow = true;
+                flushRequested.signal();
+                remaining = notFull.awaitNanos(remaining);
+                if (closed) throw new DatabaseException("Rate write queue is closed!");
+            }
+
+            reserved++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the rate write queue!");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CompletableFuture<Void> enqueue(ExchangeRate exchangeRate) throws DatabaseException {
+        lock.lock();
+        try {
+            reserved--;
+            if (closed) throw new DatabaseException("Rate write queue is closed!");
+
+            if (pending.isEmpty()) oldestPendingNanos = System.nanoTime();
+            if (pending.put(exchangeRate.getId(), exchangeRate) != null) coalesced.increment();
+            submitted.increment();
+            if (pending.size() == 1 || pending.size() >= maxBatchSize) flushRequested.signal();
+            return nextFlush;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void awaitDurability(CompletableFuture<Void> flush) throws DatabaseException {
+        if (durability == Durability.COMMIT) await(flush);
+    }
+
+    // Failed batches are retried rather than failed, so callers that must not wait out an outage are bounded here.
+    public void flush() throws DatabaseException, ServiceUnavailableException {
+        CompletableFuture<Void> flush;
+
+        lock.lock();
+        try {
+            if (pending.isEmpty()) return;
+            flushNow = true;
+            flushRequested.signal();
+            flush = nextFlush;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flush.get(submitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Queued rate updates are not written yet, try again later!");
+        } catch (ExecutionException e) {
+            throw new DatabaseException(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the rate write queue!");
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLagSeconds() {
+        lock.lock();
+        try {
+            return pending.isEmpty() ? 0 : (System.nanoTime() - oldestPendingNanos) / 1e9;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getFlushed() {
+        return flushed.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            flushRequested.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Map<Long, ExchangeRate> batch;
+            CompletableFuture<Void> batchFlush;
+            long batchStartNanos;
+
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) return;
+
+                long remaining = oldestPendingNanos + flushIntervalNanos - System.nanoTime();
+                while (remaining > 0 && !flushNow && !closed && pending.size() < maxBatchSize) {
+                    remaining = flushRequested.awaitNanos(remaining);
+                }
+
+                batch = pending;
+                batchFlush = nextFlush;
+                batchStartNanos = oldestPendingNanos;
+                pending = new LinkedHashMap<>();
+                nextFlush = new CompletableFuture<>();
+                flushNow = false;
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            write(batch, batchFlush, batchStartNanos);
+        }
+    }
+
+    private void write(Map<Long, ExchangeRate> batch, CompletableFuture<Void> batchFlush, long batchStartNanos) {
+        long start = System.nanoTime();
+        try {
+            exchangeRateDAO.updateAll(batch.values());
+            flushDuration.recordSince(start);
+            commitLag.recordSince(batchStartNanos);
+            flushed.add(batch.size());
+            resetFailures();
+            batchFlush.complete(null);
+        } catch (DatabaseException e) {
+            failures.increment();
+            LOGGER.log(Level.WARNING, "Failed to write " + batch.size() + " queued rate updates, retrying", e);
+            requeue(batch, batchFlush, batchStartNanos);
+        }
+    }
+
+    // The updates are already visible in the snapshot, so a failed batch is only ever retried: its waiters are
+    // completed together with the batch that carries the updates to the database.
+    private void requeue(Map<Long, ExchangeRate> batch, CompletableFuture<Void> batchFlush, long batchStartNanos) {
+        lock.lock();
+        try {
+            if (closed) {
+                LOGGER.severe("Dropping " + batch.size() + " queued rate updates on shutdown");
+                batchFlush.completeExceptionally(new DatabaseException("Rate write queue is closed!"));
+                return;
+            }
+
+            for (Map.Entry<Long, ExchangeRate> entry : batch.entrySet()) {
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            oldestPendingNanos = batchStartNanos;
+            nextFlush.whenComplete((result, error) -> {
+                if (error == null) batchFlush.complete(null);
+                else batchFlush.completeExceptionally(error);
+            });
+
+            long remaining = retryBackoffNanos(++consecutiveFailures);
+            while (remaining > 0 && !closed) {
+                remaining = flushRequested.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long retryBackoffNanos(int failures) {
+        long backoff = flushIntervalNanos << Math.min(failures - 1, 20);
+        return backoff <= 0 ? maxRetryBackoffNanos : Math.min(backoff, maxRetryBackoffNanos);
+    }
+
+    private void resetFailures() {
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void await(CompletableFuture<Void> flush) throws DatabaseException {
+        try {
+            flush.join();
+        } catch (CompletionException e) {
+            throw new DatabaseException(e.getCause().getMessage());
+        }
+    }
+}
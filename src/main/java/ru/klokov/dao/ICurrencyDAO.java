@@ -8,6 +8,7 @@ import java.util.Optional;
 
 public interface ICurrencyDAO {
     List<Currency> findAll() throws DatabaseException;
+    List<Currency> findPage(String afterCode, int limit) throws DatabaseException;
     Optional<Currency> findById(Long id) throws DatabaseException;
     Optional<Currency> findByCode(String code) throws DatabaseException;
     Currency save(Currency currency)  throws DatabaseException;
@@ -3,14 +3,24 @@ package ru.klokov.dao;
 import ru.klokov.exception.DatabaseException;
 import ru.klokov.model.Currency;
 import ru.klokov.model.ExchangeRate;
+import ru.klokov.response.ExchangeRateResponse;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface IExchangeRateDAO {
     List<ExchangeRate> findAll() throws DatabaseException;
+    void findAllWithCurrencies(Consumer<ExchangeRateResponse> consumer) throws DatabaseException;
+    void findPageWithCurrencies(ExchangeRatePageQuery query, Consumer<ExchangeRateResponse> consumer) throws DatabaseException;
     Optional<ExchangeRate> findByCurrencyPair(Currency baseCurrency, Currency targetCurrency) throws DatabaseException;
+    Optional<BigDecimal> findRateAsOf(Currency baseCurrency, Currency targetCurrency, Instant asOf) throws DatabaseException;
+    List<ExchangeRate> findAllAsOf(Instant asOf) throws DatabaseException;
     ExchangeRate save(ExchangeRate exchangeRate) throws DatabaseException;
     ExchangeRate update(ExchangeRate exchangeRate, BigDecimal newRate) throws DatabaseException;
+    int upsertAll(Collection<ExchangeRate> exchangeRates) throws DatabaseException;
+    void updateAll(Collection<ExchangeRate> exchangeRates) throws DatabaseException;
 }
@@ -0,0 +1,107 @@
+package ru.klokov.datasource;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+class ConnectionPool implements AutoCloseable {
+    private final String name;
+    private final String url;
+    private final SQLiteConfig config;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private volatile boolean closed;
+
+    ConnectionPool(String name, String url, SQLiteConfig config, int maxSize, long borrowTimeoutMillis,
+                   int statementCacheSize) {
+        this.name = name;
+        this.url = url;
+        this.config = config;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool " + name + " is closed");
+
+        long start = System.nanoTime();
+        PooledConnection pooledConnection = idle.poll();
+        if (pooledConnection == null) pooledConnection = tryCreate();
+        if (pooledConnection == null) {
+            waits.increment();
+            try {
+                pooledConnection = idle.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection from pool " + name);
+            }
+            if (pooledConnection == null) {
+                timeouts.increment();
+                throw new SQLException("Timed out waiting for a connection from pool " + name);
+            }
+        }
+
+        active.incrementAndGet();
+        borrows.increment();
+        borrowNanos.add(System.nanoTime() - start);
+
+        return pooledConnection.newHandle();
+    }
+
+    void release(PooledConnection pooledConnection) {
+        active.decrementAndGet();
+        if (closed || !pooledConnection.reset()) {
+            discard(pooledConnection);
+            return;
+        }
+        idle.offer(pooledConnection);
+    }
+
+    PoolStats getStats() {
+        return new PoolStats(name, maxSize, active.get(), idle.size(), borrows.sum(), waits.sum(), timeouts.sum(),
+                borrowNanos.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idle.poll()) != null) {
+            discard(pooledConnection);
+        }
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        while (true) {
+            int count = created.get();
+            if (count >= maxSize) return null;
+            if (created.compareAndSet(count, count + 1)) break;
+        }
+        try {
+            return new PooledConnection(this, config.createConnection(url), statementCacheSize);
+        } catch (SQLException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        created.decrementAndGet();
+        pooledConnection.closePhysical();
+    }
+}
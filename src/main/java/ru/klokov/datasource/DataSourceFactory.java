@@ -4,4 +4,8 @@ import javax.sql.DataSource;
 
 public interface DataSourceFactory {
     DataSource getDataSource();
+
+    default DataSource getWriteDataSource() {
+        return getDataSource();
+    }
 }
@@ -0,0 +1,67 @@
+package ru.klokov.datasource;
+
+public class PoolStats {
+    private final String name;
+    private final int maxSize;
+    private final int activeCount;
+    private final int idleCount;
+    private final long borrowCount;
+    private final long waitCount;
+    private final long timeoutCount;
+    private final long totalBorrowTimeNanos;
+
+    public PoolStats(String name, int maxSize, int activeCount, int idleCount, long borrowCount, long waitCount,
+                     long timeoutCount, long totalBorrowTimeNanos) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.activeCount = activeCount;
+        this.idleCount = idleCount;
+        this.borrowCount = borrowCount;
+        this.waitCount = waitCount;
+        this.timeoutCount = timeoutCount;
+        this.totalBorrowTimeNanos = totalBorrowTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name + " max=" + maxSize + " active=" + activeCount + " idle=" + idleCount +
+                " borrows=" + borrowCount + " waits=" + waitCount + " timeouts=" + timeoutCount +
+                " avgBorrowMicros=" + getAverageBorrowTimeMicros();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getTotalBorrowTimeNanos() {
+        return totalBorrowTimeNanos;
+    }
+
+    public double getAverageBorrowTimeMicros() {
+        return borrowCount == 0 ? 0 : totalBorrowTimeNanos / 1000.0 / borrowCount;
+    }
+}
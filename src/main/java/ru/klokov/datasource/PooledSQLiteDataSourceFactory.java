@@ -0,0 +1,87 @@
+package ru.klokov.datasource;
+
+import org.sqlite.SQLiteConfig;
+import ru.klokov.util.ApplicationProperties;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class PooledSQLiteDataSourceFactory implements DataSourceFactory, AutoCloseable {
+    private final PooledDataSource writeDataSource;
+    private final PooledDataSource readDataSource;
+
+    public PooledSQLiteDataSourceFactory(ApplicationProperties properties) {
+        String url = properties.getString("db.url", null);
+        if (url == null) url = "jdbc:sqlite:" + databaseFile(properties);
+        long borrowTimeoutMillis = properties.getLong("db.pool.borrowTimeoutMillis", 5000);
+        int statementCacheSize = properties.getInt("db.pool.statementCacheSize", 32);
+
+        SQLiteConfig writerConfig = baseConfig(properties);
+        writerConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        SQLiteConfig readerConfig = baseConfig(properties);
+        readerConfig.setReadOnly(true);
+
+        writeDataSource = new PooledDataSource(new ConnectionPool("writer", url, writerConfig, 1,
+                borrowTimeoutMillis, statementCacheSize));
+        readDataSource = new PooledDataSource(new ConnectionPool("reader", url, readerConfig,
+                properties.getInt("db.pool.readers", 8), borrowTimeoutMillis, statementCacheSize));
+
+        // The writer switches the database file to WAL before any read-only connection opens it.
+        try (Connection ignored = writeDataSource.getConnection()) {
+        } catch (SQLException e) {
+            throw new RuntimeException("DataBase error!");
+        }
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return readDataSource;
+    }
+
+    @Override
+    public DataSource getWriteDataSource() {
+        return writeDataSource;
+    }
+
+    public PoolStats getReadPoolStats() {
+        return readDataSource.getStats();
+    }
+
+    public PoolStats getWritePoolStats() {
+        return writeDataSource.getStats();
+    }
+
+    @Override
+    public void close() {
+        readDataSource.close();
+        writeDataSource.close();
+    }
+
+    private Path databaseFile(ApplicationProperties properties) {
+        String path = properties.getString("db.path", "");
+        Path file = path.isBlank()
+                ? Path.of(System.getProperty("user.home"), ".currency-exchange", "currency_exchange.db")
+                : Path.of(path);
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot create database directory for " + file + "!");
+        }
+        return file.toAbsolutePath();
+    }
+
+    private SQLiteConfig baseConfig(ApplicationProperties properties) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(properties.getString("db.pragma.synchronous", "NORMAL")));
+        config.setCacheSize(properties.getInt("db.pragma.cacheSize", -16000));
+        config.setBusyTimeout(properties.getInt("db.pragma.busyTimeoutMillis", 5000));
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, properties.getString("db.pragma.mmapSize", "268435456"));
+        return config;
+    }
+}
@@ -5,10 +5,16 @@ import org.sqlite.SQLiteDataSource;
 import javax.sql.DataSource;
 
 public class SQLiteDataSourceFactory implements DataSourceFactory {
+    private final String url;
+
+    public SQLiteDataSourceFactory(String url) {
+        this.url = url;
+    }
+
     @Override
     public DataSource getDataSource() {
         SQLiteDataSource dataSource = new SQLiteDataSource();
-        dataSource.setUrl("jdbc:sqlite::resource:currency_exchange.db");
+        dataSource.setUrl(url);
 
         return dataSource;
     }
@@ -0,0 +1,122 @@
+package ru.klokov.datasource;
+
+import ru.klokov.exception.DatabaseException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+public class SchemaMigrator {
+    private static final String MIGRATION_LOCATION = "db/migration/";
+    private static final String SEED_LOCATION = "db/seed.sql";
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__create_schema.sql",
+            "V2__index_exchange_rates_by_target.sql"
+    );
+
+    private final DataSource dataSource;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public int migrate() throws DatabaseException {
+        int applied = 0;
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY, " +
+                        "description TEXT NOT NULL, " +
+                        "applied_at INTEGER NOT NULL)");
+            }
+
+            int currentVersion = currentVersion(connection);
+            for (String migration : MIGRATIONS) {
+                int version = version(migration);
+                if (version <= currentVersion) continue;
+
+                apply(connection, version, migration);
+                applied++;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Schema migration failed: " + e.getMessage());
+        }
+
+        return applied;
+    }
+
+    public boolean seedIfEmpty() throws DatabaseException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM currencies)")) {
+                if (resultSet.next() && resultSet.getBoolean(1)) return false;
+            }
+
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(read(SEED_LOCATION));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Database seeding failed: " + e.getMessage());
+        }
+
+        return true;
+    }
+
+    private void apply(Connection connection, int version, String migration) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+            statement.executeUpdate(read(MIGRATION_LOCATION + migration));
+
+            preparedStatement.setInt(1, version);
+            preparedStatement.setString(2, description(migration));
+            preparedStatement.setLong(3, System.currentTimeMillis());
+            preparedStatement.executeUpdate();
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException(migration + ": " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static int version(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String description(String migration) {
+        return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    private static String read(String location) {
+        try (InputStream inputStream = SchemaMigrator.class.getClassLoader().getResourceAsStream(location)) {
+            if (inputStream == null) throw new DatabaseException("SQL script " + location + " not found!");
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DatabaseException("SQL script " + location + " could not be read!");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.klokov.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class MetricsRegistry {
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "histogram").metrics.computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").metrics.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    public void counter(String name, String help, Supplier<Number> value, String... labels) {
+        family(name, help, "counter").metrics.put(labels(labels), value);
+    }
+
+    public void gauge(String name, String help, Supplier<Number> value, String... labels) {
+        family(name, help, "gauge").metrics.put(labels(labels), value);
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (Family family : families.values()) {
+            writer.write("# HELP " + family.name + " " + family.help + "\n");
+            writer.write("# TYPE " + family.name + " " + family.type + "\n");
+            for (Map.Entry<String, Object> entry : family.metrics.entrySet()) {
+                writeMetric(writer, family.name, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeMetric(Writer writer, String name, String labels, Object metric) throws IOException {
+        if (metric instanceof LongAdder) {
+            writer.write(name + braces(labels) + " " + ((LongAdder) metric).sum() + "\n");
+        } else if (metric instanceof Supplier) {
+            writer.write(name + braces(labels) + " " + ((Supplier<Number>) metric).get() + "\n");
+        } else {
+            LatencyHistogram histogram = (LatencyHistogram) metric;
+            long[] counts = histogram.getBucketCounts();
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+
+            for (int i = 0; i < LatencyHistogram.BUCKET_BOUNDS_NANOS.length; i++) {
+                cumulative += counts[i];
+                writer.write(name + "_bucket{" + prefix + "le=\"" + bound(LatencyHistogram.BUCKET_BOUNDS_NANOS[i]) + "\"} " +
+                        cumulative + "\n");
+            }
+            cumulative += counts[counts.length - 1];
+            writer.write(name + "_bucket{" + prefix + "le=\"+Inf\"} " + cumulative + "\n");
+            writer.write(name + "_sum" + braces(labels) + " " + seconds(histogram.getSumNanos()) + "\n");
+            writer.write(name + "_count" + braces(labels) + " " + cumulative + "\n");
+        }
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type + "!");
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Metric labels must be name/value pairs!");
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) builder.append(',');
+            builder.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return builder.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String bound(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.klokov.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class QueryTimer {
+    private final MetricsRegistry metrics;
+    private final String dao;
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public QueryTimer(MetricsRegistry metrics, String dao) {
+        this.metrics = metrics;
+        this.dao = dao;
+    }
+
+    public void record(String query, long startNanos) {
+        LatencyHistogram histogram = histograms.get(query);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(query, key -> metrics.histogram("dao_query_duration_seconds",
+                    "Time spent executing a DAO query, including result mapping.", "dao", dao, "query", key));
+        }
+        histogram.recordSince(startNanos);
+    }
+}
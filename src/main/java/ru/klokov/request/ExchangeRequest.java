@@ -0,0 +1,51 @@
+package ru.klokov.request;
+
+import java.math.BigDecimal;
+
+public class ExchangeRequest {
+    private String from;
+    private String to;
+    private BigDecimal amount;
+    private String asOf;
+
+    public ExchangeRequest() {
+    }
+
+    public ExchangeRequest(String from, String to, BigDecimal amount) {
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(String asOf) {
+        this.asOf = asOf;
+    }
+}
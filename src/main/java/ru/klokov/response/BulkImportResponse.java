@@ -0,0 +1,33 @@
+package ru.klokov.response;
+
+import java.util.List;
+
+public class BulkImportResponse {
+    private final int inserted;
+    private final int updated;
+    private final int rejected;
+    private final List<String> errors;
+
+    public BulkImportResponse(int inserted, int updated, int rejected, List<String> errors) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -1,83 +1,169 @@
 package ru.klokov.service;
 
-import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.dao.IExchangeRateDAO;
 import ru.klokov.exception.DatabaseException;
 import ru.klokov.exception.ResourceNotFoundException;
+import ru.klokov.metrics.MetricsRegistry;
 import ru.klokov.model.Currency;
 import ru.klokov.model.ExchangeRate;
 import ru.klokov.response.ExchangeResponse;
+import ru.klokov.snapshot.CurrencyIndex;
+import ru.klokov.snapshot.RateMatrix;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.PackedDecimal;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class ExchangeService {
     private static final int SCALE = 4;
-    private final ICurrencyDAO currencyDAO;
+    private final RateSnapshotHolder rateSnapshotHolder;
     private final IExchangeRateDAO exchangeRateDAO;
+    private final LongAdder identityConversions;
+    private final LongAdder directConversions;
+    private final LongAdder reverseConversions;
+    private final LongAdder crossConversions;
 
-    public ExchangeService(ICurrencyDAO currencyDAO, IExchangeRateDAO exchangeRateDAO) {
-        this.currencyDAO = currencyDAO;
+    public ExchangeService(RateSnapshotHolder rateSnapshotHolder, IExchangeRateDAO exchangeRateDAO) {
+        this(rateSnapshotHolder, exchangeRateDAO, new MetricsRegistry());
+    }
+
+    public ExchangeService(RateSnapshotHolder rateSnapshotHolder, IExchangeRateDAO exchangeRateDAO, MetricsRegistry metrics) {
+        this.rateSnapshotHolder = rateSnapshotHolder;
         this.exchangeRateDAO = exchangeRateDAO;
+        this.identityConversions = strategyCounter(metrics, "identity");
+        this.directConversions = strategyCounter(metrics, "direct");
+        this.reverseConversions = strategyCounter(metrics, "reverse");
+        this.crossConversions = strategyCounter(metrics, "cross");
     }
 
-    public ExchangeResponse convert(Currency baseCurrency, Currency targetCurrency, BigDecimal amount) throws DatabaseException, ResourceNotFoundException {
-        Optional<ExchangeRate> exchangeRateOptional = getExchangeRate(baseCurrency, targetCurrency);
+    public ExchangeResponse convert(Currency baseCurrency, Currency targetCurrency, BigDecimal amount) throws ResourceNotFoundException {
+        BigDecimal rate = getRate(rateSnapshotHolder.get(), baseCurrency, targetCurrency);
 
-        if (exchangeRateOptional.isEmpty()) throw new ResourceNotFoundException("Exchange rate with code pair " +
-                baseCurrency.getCode() + "-" + targetCurrency.getCode() + " not found!");
+        return convert(baseCurrency, targetCurrency, rate, amount);
+    }
 
-        ExchangeRate exchangeRate = exchangeRateOptional.get();
-        BigDecimal convertedAmount = amount.multiply(exchangeRate.getRate()).setScale(SCALE, RoundingMode.HALF_EVEN);
+    public ExchangeResponse convert(Currency baseCurrency, Currency targetCurrency, BigDecimal rate, BigDecimal amount) {
+        BigDecimal convertedAmount = amount.multiply(rate).setScale(SCALE, RoundingMode.HALF_EVEN);
 
         return new ExchangeResponse(
                 baseCurrency,
                 targetCurrency,
-                exchangeRate.getRate(),
+                rate,
                 amount,
                 convertedAmount
         );
     }
 
-    private Optional<ExchangeRate> getExchangeRate(Currency baseCurrency, Currency targetCurrency) {
-        Optional<ExchangeRate> exchangeRate = findDirectRate(baseCurrency, targetCurrency);
-        if (exchangeRate.isEmpty()) exchangeRate = findReverseRate(baseCurrency, targetCurrency);
-        if (exchangeRate.isEmpty()) exchangeRate = findCrossRate(baseCurrency, targetCurrency);
+    public ExchangeResponse convert(RateSnapshot snapshot, Currency baseCurrency, Currency targetCurrency, BigDecimal amount)
+            throws ResourceNotFoundException {
+        long packedRate = snapshot.findPackedRate(baseCurrency, targetCurrency);
+        if (packedRate == PackedDecimal.ABSENT) throw rateNotFound(baseCurrency, targetCurrency);
+        countStrategy(snapshot, baseCurrency, targetCurrency);
+
+        ExchangeResponse exchangeResponse = convert(baseCurrency, targetCurrency, packedRate, PackedDecimal.pack(amount));
+        if (exchangeResponse != null) return exchangeResponse;
+
+        BigDecimal rate = snapshot.findRate(baseCurrency, targetCurrency).orElseThrow(() -> rateNotFound(baseCurrency, targetCurrency));
+        return convert(baseCurrency, targetCurrency, rate, amount);
+    }
+
+    public List<ExchangeResponse> convertToAll(RateSnapshot snapshot, Currency baseCurrency, BigDecimal amount) {
+        CurrencyIndex currencyIndex = snapshot.getCurrencyIndex();
+        RateMatrix rateMatrix = snapshot.getRateMatrix();
+        int baseIndex = currencyIndex.indexOfId(baseCurrency.getId());
+        if (baseIndex == CurrencyIndex.NOT_FOUND) return List.of();
+
+        long packedAmount = PackedDecimal.pack(amount);
+        List<ExchangeResponse> exchangeResponses = new ArrayList<>();
+        for (int targetIndex = 0; targetIndex < currencyIndex.size(); targetIndex++) {
+            long packedRate = rateMatrix.getPackedRate(baseIndex, targetIndex);
+            if (targetIndex == baseIndex || packedRate == PackedDecimal.ABSENT) continue;
+
+            Currency targetCurrency = currencyIndex.get(targetIndex);
+            countStrategy(snapshot, baseCurrency, targetCurrency);
+
+            ExchangeResponse exchangeResponse = convert(baseCurrency, targetCurrency, packedRate, packedAmount);
+            exchangeResponses.add(exchangeResponse != null
+                    ? exchangeResponse
+                    : convert(baseCurrency, targetCurrency, rateMatrix.get(baseIndex, targetIndex), amount));
+        }
+        return exchangeResponses;
+    }
+
+    public BigDecimal getRate(RateSnapshot snapshot, Currency baseCurrency, Currency targetCurrency) throws ResourceNotFoundException {
+        Optional<BigDecimal> rate = snapshot.findRate(baseCurrency, targetCurrency);
+
+        if (rate.isEmpty()) throw rateNotFound(baseCurrency, targetCurrency);
+        countStrategy(snapshot, baseCurrency, targetCurrency);
 
-        return exchangeRate;
+        return rate.get();
     }
 
-    private Optional<ExchangeRate> findDirectRate(Currency baseCurrency, Currency targetCurrency) {
-        return exchangeRateDAO.findByCurrencyPair(baseCurrency, targetCurrency);
+    public BigDecimal getRateAsOf(RateSnapshot snapshot, Currency baseCurrency, Currency targetCurrency, Instant asOf)
+            throws DatabaseException, ResourceNotFoundException {
+        return getRateAsOf(snapshot, baseCurrency, targetCurrency, asOf, exchangeRateDAO::findAllAsOf);
     }
 
-    private Optional<ExchangeRate> findReverseRate(Currency baseCurrency, Currency targetCurrency) {
-        Optional<ExchangeRate> exchangeRateOptional = exchangeRateDAO.findByCurrencyPair(targetCurrency, baseCurrency);
-        if (exchangeRateOptional.isPresent()) {
-            ExchangeRate exchangeRate = exchangeRateOptional.get();
-            BigDecimal rate = BigDecimal.ONE.divide(exchangeRate.getRate(), SCALE, RoundingMode.HALF_EVEN);
-            exchangeRate.setRate(rate);
-            return Optional.of(exchangeRate);
+    public BigDecimal getRateAsOf(RateSnapshot snapshot, Currency baseCurrency, Currency targetCurrency, Instant asOf,
+                                  Function<Instant, List<ExchangeRate>> ratesAsOf)
+            throws DatabaseException, ResourceNotFoundException {
+        Optional<BigDecimal> directRate = exchangeRateDAO.findRateAsOf(baseCurrency, targetCurrency, asOf);
+        if (directRate.isPresent()) {
+            directConversions.increment();
+            return directRate.get();
         }
-        return exchangeRateOptional;
+
+        Optional<BigDecimal> reverseRate = exchangeRateDAO.findRateAsOf(targetCurrency, baseCurrency, asOf);
+        if (reverseRate.isPresent()) {
+            reverseConversions.increment();
+            return BigDecimal.ONE.divide(reverseRate.get(), SCALE, RoundingMode.HALF_EVEN);
+        }
+
+        Optional<BigDecimal> crossRate = snapshot.resolveRate(baseCurrency, targetCurrency, ratesAsOf.apply(asOf));
+        if (crossRate.isEmpty()) throw new ResourceNotFoundException("Exchange rate with code pair " +
+                baseCurrency.getCode() + "-" + targetCurrency.getCode() + " not found at " + asOf + "!");
+
+        crossConversions.increment();
+        return crossRate.get();
     }
 
-    private Optional<ExchangeRate> findCrossRate(Currency baseCurrency, Currency targetCurrency) {
-        Optional<Currency> usd = currencyDAO.findByCode("USD");
+    private ExchangeResponse convert(Currency baseCurrency, Currency targetCurrency, long packedRate, long packedAmount) {
+        if (packedRate == PackedDecimal.OVERFLOW || packedAmount == PackedDecimal.OVERFLOW) return null;
 
-        if (usd.isEmpty()) throw new ResourceNotFoundException("Currency with code USD not found!");
+        long convertedAmount = PackedDecimal.multiply(packedAmount, packedRate, SCALE);
+        if (convertedAmount == PackedDecimal.OVERFLOW) return null;
 
-        Optional<ExchangeRate> usdToBase = exchangeRateDAO.findByCurrencyPair(usd.get(), baseCurrency);
-        if (usdToBase.isEmpty()) throw new ResourceNotFoundException("Exchange rate with code pair USD-" +
-                baseCurrency.getCode() + " not found!");
+        return new ExchangeResponse(
+                baseCurrency,
+                targetCurrency,
+                PackedDecimal.toBigDecimal(packedRate),
+                PackedDecimal.toBigDecimal(packedAmount),
+                BigDecimal.valueOf(convertedAmount, SCALE)
+        );
+    }
 
-        Optional<ExchangeRate> usdToTarget = exchangeRateDAO.findByCurrencyPair(usd.get(), targetCurrency);
-        if (usdToTarget.isEmpty()) throw new ResourceNotFoundException("Exchange rate with code pair USD-" +
-                targetCurrency.getCode() + " not found!");
+    private void countStrategy(RateSnapshot snapshot, Currency baseCurrency, Currency targetCurrency) {
+        if (baseCurrency.getId().equals(targetCurrency.getId())) identityConversions.increment();
+        else if (snapshot.hasExchangeRate(baseCurrency, targetCurrency)) directConversions.increment();
+        else if (snapshot.hasExchangeRate(targetCurrency, baseCurrency)) reverseConversions.increment();
+        else crossConversions.increment();
+    }
 
-        BigDecimal rate = usdToTarget.get().getRate().divide(usdToBase.get().getRate(), SCALE, RoundingMode.HALF_EVEN);
+    private static ResourceNotFoundException rateNotFound(Currency baseCurrency, Currency targetCurrency) {
+        return new ResourceNotFoundException("Exchange rate with code pair " +
+                baseCurrency.getCode() + "-" + targetCurrency.getCode() + " not found!");
+    }
 
-        return Optional.of(new ExchangeRate(baseCurrency.getId(), targetCurrency.getId(), rate));
+    private static LongAdder strategyCounter(MetricsRegistry metrics, String strategy) {
+        return metrics.counter("exchange_rate_resolutions_total",
+                "Exchange rates resolved for conversions, by the strategy that answered.", "strategy", strategy);
     }
 }
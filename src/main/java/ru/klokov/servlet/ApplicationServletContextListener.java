@@ -1,26 +1,40 @@
 package ru.klokov.servlet;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import ru.klokov.cache.BoundedCache;
+import ru.klokov.cache.ResponseCache;
+import ru.klokov.compression.ResponseCompressor;
+import ru.klokov.dao.CachingCurrencyDAO;
 import ru.klokov.dao.CurrencyDAO;
+import ru.klokov.dao.DataVersion;
 import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.dao.ExchangeRateWriteQueue;
 import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.dao.IExchangeRateDAO;
-import ru.klokov.datasource.SQLiteDataSourceFactory;
+import ru.klokov.datasource.PooledSQLiteDataSourceFactory;
+import ru.klokov.datasource.SchemaMigrator;
+import ru.klokov.metrics.MetricsRegistry;
 import ru.klokov.service.ExchangeService;
+import ru.klokov.snapshot.CrossRatePolicy;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.stream.RateStreamHub;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.ResponseFormat;
+import ru.klokov.util.StartupTimer;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Objects;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @WebListener
 public class ApplicationServletContextListener implements ServletContextListener {
@@ -28,29 +42,215 @@ public class ApplicationServletContextListener implements ServletContextListener
     public void contextInitialized(ServletContextEvent sce) {
         ServletContext context = sce.getServletContext();
 
-        DataSource sqliteDataSource = new SQLiteDataSourceFactory().getDataSource();
-        ICurrencyDAO currencyDAO = new CurrencyDAO(sqliteDataSource);
-        IExchangeRateDAO exchangeRateDAO = new ExchangeRateDAO(sqliteDataSource);
+        StartupTimer startupTimer = new StartupTimer();
+        ApplicationProperties properties = new ApplicationProperties();
+        PooledSQLiteDataSourceFactory dataSourceFactory = new PooledSQLiteDataSourceFactory(properties);
+        DataSource readDataSource = dataSourceFactory.getDataSource();
+        DataSource writeDataSource = dataSourceFactory.getWriteDataSource();
+        startupTimer.mark("db.open");
 
-        initDataBase(sqliteDataSource);
+        initDataBase(context, properties, writeDataSource);
+        startupTimer.mark("db.migrate");
 
-        context.setAttribute("mapper", new ObjectMapper());
+        DataVersion dataVersion = new DataVersion();
+        MetricsRegistry metrics = new MetricsRegistry();
+        ICurrencyDAO currencyDAO = new CurrencyDAO(readDataSource, writeDataSource, dataVersion, metrics);
+        if (properties.getBoolean("cache.currency.enabled", true)) {
+            CachingCurrencyDAO cachingCurrencyDAO = new CachingCurrencyDAO(
+                    currencyDAO,
+                    properties.getInt("cache.currency.maxEntries", 10000),
+                    TimeUnit.SECONDS.toNanos(properties.getLong("cache.currency.ttlSeconds", 300)),
+                    properties.getInt("cache.currency.negativeMaxEntries", 10000),
+                    TimeUnit.SECONDS.toNanos(properties.getLong("cache.currency.negativeTtlSeconds", 30)),
+                    BoundedCache.Eviction.valueOf(properties.getString("cache.currency.eviction", "LRU").toUpperCase())
+            );
+            registerCurrencyCacheGauges(metrics, cachingCurrencyDAO);
+            currencyDAO = cachingCurrencyDAO;
+        }
+        IExchangeRateDAO exchangeRateDAO = new ExchangeRateDAO(readDataSource, writeDataSource, dataVersion, metrics);
+        startupTimer.mark("dao.wiring");
+
+        CrossRatePolicy crossRatePolicy = new CrossRatePolicy(
+                properties.getInt("exchange.cross.maxHops", 3),
+                List.of(properties.getString("exchange.cross.preferredPivots", "USD").split(",")),
+                properties.getInt("exchange.matrix.denseLimit", 2048)
+        );
+        RateSnapshotHolder rateSnapshotHolder = new RateSnapshotHolder(currencyDAO, exchangeRateDAO, crossRatePolicy, dataVersion);
+        rateSnapshotHolder.reload();
+        startupTimer.mark("snapshot.load");
+
+        context.setAttribute("properties", properties);
+        context.setAttribute("dataSourceFactory", dataSourceFactory);
+        context.setAttribute("dataVersion", dataVersion);
+        ResponseCache responseCache = new ResponseCache(
+                dataVersion,
+                properties.getLong("cache.response.maxBytes", 64L * 1024 * 1024),
+                properties.getInt("cache.response.maxEntryBytes", 8 * 1024 * 1024)
+        );
+        ObjectMapper mapper = new ObjectMapper();
+        RateStreamHub rateStreamHub = new RateStreamHub(
+                rateSnapshotHolder,
+                mapper,
+                properties.getInt("stream.maxSubscribers", 10000),
+                properties.getLong("stream.heartbeatSeconds", 15)
+        );
+        rateSnapshotHolder.addRateChangeListener(rateStreamHub);
+        registerGauges(metrics, dataSourceFactory, responseCache, rateSnapshotHolder, rateStreamHub);
+
+        context.setAttribute("metrics", metrics);
+        context.setAttribute("responseCache", responseCache);
+        context.setAttribute("mapper", mapper);
+        context.setAttribute("responseMappers", responseMappers(mapper));
+        context.setAttribute("rateStreamHub", rateStreamHub);
         context.setAttribute("currencyDAO", currencyDAO);
-        context.setAttribute("exchangeRateDAO", new ExchangeRateDAO(sqliteDataSource));
-        context.setAttribute("exchangeService", new ExchangeService(currencyDAO, exchangeRateDAO));
-    }
-
-    private void initDataBase(DataSource dataSource) {
-        try (Connection connection = dataSource.getConnection();
-             Statement statement = connection.createStatement())
-        {
-            String sql = new String(Files.readAllBytes(Paths.get(Objects.requireNonNull(
-                    getClass().getClassLoader().getResource("init.sql")).toURI())));
-            statement.executeUpdate(sql);
-        } catch (SQLException e) {
-            throw new RuntimeException("DataBase error!");
-        } catch (IOException | URISyntaxException e) {
-            throw new RuntimeException("SQL query file error!");
+        context.setAttribute("exchangeRateDAO", exchangeRateDAO);
+        context.setAttribute("rateSnapshotHolder", rateSnapshotHolder);
+        context.setAttribute("exchangeService", new ExchangeService(rateSnapshotHolder, exchangeRateDAO, metrics));
+
+        if (properties.getBoolean("db.writeBehind.enabled", false)) {
+            ExchangeRateWriteQueue exchangeRateWriteQueue = new ExchangeRateWriteQueue(
+                    exchangeRateDAO,
+                    properties.getLong("db.writeBehind.flushIntervalMillis", 50),
+                    properties.getInt("db.writeBehind.maxBatchSize", 1000),
+                    properties.getInt("db.writeBehind.maxQueueDepth", 10000),
+                    properties.getLong("db.writeBehind.submitTimeoutMillis", 1000),
+                    properties.getLong("db.writeBehind.maxRetryBackoffMillis", 5000),
+                    ExchangeRateWriteQueue.Durability.valueOf(properties.getString("db.writeBehind.durability", "ASYNC").toUpperCase()),
+                    metrics
+            );
+            registerWriteQueueGauges(metrics, exchangeRateWriteQueue);
+            context.setAttribute("exchangeRateWriteQueue", exchangeRateWriteQueue);
+        }
+
+        if (properties.getString("servlet.execution", "sync").equals("virtual")) {
+            context.setAttribute("requestExecutor",
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory()));
+        }
+        if (properties.getBoolean("compression.enabled", true)) {
+            context.setAttribute("responseCompressor", new ResponseCompressor(
+                    properties.getInt("compression.minBytes", 1024),
+                    properties.getInt("compression.level", 6),
+                    metrics
+            ));
+        }
+        startupTimer.mark("services.wiring");
+
+        registerStartupPhases(metrics, startupTimer);
+        context.setAttribute("startupTimer", startupTimer);
+        context.log("Application initialized: " + startupTimer);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        RateStreamHub rateStreamHub = (RateStreamHub) sce.getServletContext().getAttribute("rateStreamHub");
+        if (rateStreamHub != null) rateStreamHub.close();
+
+        ExecutorService requestExecutor = (ExecutorService) sce.getServletContext().getAttribute("requestExecutor");
+        if (requestExecutor != null) requestExecutor.close();
+
+        ExchangeRateWriteQueue exchangeRateWriteQueue =
+                (ExchangeRateWriteQueue) sce.getServletContext().getAttribute("exchangeRateWriteQueue");
+        if (exchangeRateWriteQueue != null) exchangeRateWriteQueue.close();
+
+        PooledSQLiteDataSourceFactory dataSourceFactory =
+                (PooledSQLiteDataSourceFactory) sce.getServletContext().getAttribute("dataSourceFactory");
+        if (dataSourceFactory != null) dataSourceFactory.close();
+    }
+
+    private void registerGauges(MetricsRegistry metrics, PooledSQLiteDataSourceFactory dataSourceFactory,
+                                ResponseCache responseCache, RateSnapshotHolder rateSnapshotHolder,
+                                RateStreamHub rateStreamHub) {
+        metrics.gauge("db_pool_active_connections", "Connections currently borrowed from the pool.",
+                () -> dataSourceFactory.getReadPoolStats().getActiveCount(), "pool", "read");
+        metrics.gauge("db_pool_active_connections", "Connections currently borrowed from the pool.",
+                () -> dataSourceFactory.getWritePoolStats().getActiveCount(), "pool", "write");
+        metrics.counter("db_pool_borrow_waits_total", "Borrows that had to wait for a free connection.",
+                () -> dataSourceFactory.getReadPoolStats().getWaitCount(), "pool", "read");
+        metrics.counter("db_pool_borrow_waits_total", "Borrows that had to wait for a free connection.",
+                () -> dataSourceFactory.getWritePoolStats().getWaitCount(), "pool", "write");
+        metrics.counter("db_pool_borrow_timeouts_total", "Borrows that timed out waiting for a connection.",
+                () -> dataSourceFactory.getReadPoolStats().getTimeoutCount(), "pool", "read");
+        metrics.counter("db_pool_borrow_timeouts_total", "Borrows that timed out waiting for a connection.",
+                () -> dataSourceFactory.getWritePoolStats().getTimeoutCount(), "pool", "write");
+
+        metrics.counter("response_cache_hits_total", "Response cache hits.", responseCache::getHits);
+        metrics.counter("response_cache_misses_total", "Response cache misses.", responseCache::getMisses);
+        metrics.counter("response_cache_evictions_total", "Response cache evictions.", responseCache::getEvictions);
+        metrics.counter("response_cache_invalidations_total", "Response cache invalidations.", responseCache::getInvalidations);
+        metrics.gauge("response_cache_entries", "Entries in the response cache.", responseCache::getSize);
+        metrics.gauge("response_cache_bytes", "Bytes held by the response cache.", responseCache::getUsedBytes);
+
+        metrics.gauge("rate_snapshot_version", "Version of the in-memory rate snapshot.",
+                () -> rateSnapshotHolder.get().getVersion());
+        metrics.gauge("rate_matrix_pairs", "Resolvable currency pairs in the rate matrix.",
+                () -> rateSnapshotHolder.get().getRateMatrix().getPairCount());
+        metrics.gauge("rate_matrix_bytes", "Approximate heap footprint of the rate matrix.",
+                () -> rateSnapshotHolder.get().getRateMatrix().getFootprintBytes());
+        metrics.gauge("rate_matrix_bytes_per_pair", "Approximate heap bytes per resolvable pair in the rate matrix.",
+                () -> rateSnapshotHolder.get().getRateMatrix().getBytesPerPair());
+
+        metrics.gauge("rate_stream_subscribers", "Open rate stream connections.", rateStreamHub::getSubscriberCount);
+        metrics.counter("rate_stream_events_sent_total", "Rate events written to stream subscribers.",
+                rateStreamHub::getSentEvents);
+        metrics.counter("rate_stream_events_conflated_total", "Rate events replaced by a newer rate before being sent.",
+                rateStreamHub::getConflatedEvents);
+    }
+
+    private Map<ResponseFormat, ObjectMapper> responseMappers(ObjectMapper mapper) {
+        Map<ResponseFormat, ObjectMapper> responseMappers = new EnumMap<>(ResponseFormat.class);
+        responseMappers.put(ResponseFormat.JSON, mapper);
+        responseMappers.put(ResponseFormat.SMILE, mapper.copyWith(new SmileFactory()));
+        responseMappers.put(ResponseFormat.CBOR, mapper.copyWith(new CBORFactory()));
+        return responseMappers;
+    }
+
+    private void registerStartupPhases(MetricsRegistry metrics, StartupTimer startupTimer) {
+        for (Map.Entry<String, Long> phase : startupTimer.getPhaseNanos().entrySet()) {
+            double seconds = phase.getValue() / 1e9;
+            metrics.gauge("startup_phase_seconds", "Time spent in each startup phase.", () -> seconds, "phase", phase.getKey());
         }
     }
+
+    private void registerCurrencyCacheGauges(MetricsRegistry metrics, CachingCurrencyDAO cachingCurrencyDAO) {
+        metrics.counter("currency_cache_hits_total", "Currency lookups answered from the cache.",
+                cachingCurrencyDAO::getHits);
+        metrics.counter("currency_cache_negative_hits_total", "Lookups of unknown currency codes answered from the cache.",
+                cachingCurrencyDAO::getNegativeHits);
+        metrics.counter("currency_cache_misses_total", "Currency lookups that went to the database.",
+                cachingCurrencyDAO::getMisses);
+        metrics.counter("currency_cache_load_seconds_total", "Time spent loading currencies from the database.",
+                cachingCurrencyDAO::getLoadSeconds);
+        metrics.counter("currency_cache_evictions_total", "Currency cache entries evicted to stay within the bound.",
+                cachingCurrencyDAO::getEvictions);
+        metrics.counter("currency_cache_expirations_total", "Currency cache entries dropped after their TTL.",
+                cachingCurrencyDAO::getExpirations);
+        metrics.gauge("currency_cache_entries", "Entries in the currency by-code and by-id indexes.",
+                cachingCurrencyDAO::getSize);
+        metrics.gauge("currency_cache_negative_entries", "Unknown currency codes held in the negative cache.",
+                cachingCurrencyDAO::getNegativeSize);
+    }
+
+    private void registerWriteQueueGauges(MetricsRegistry metrics, ExchangeRateWriteQueue exchangeRateWriteQueue) {
+        metrics.gauge("rate_write_behind_queue_depth", "Rate updates waiting to be written to the database.",
+                exchangeRateWriteQueue::getQueueDepth);
+        metrics.gauge("rate_write_behind_lag_seconds", "Age of the oldest rate update not yet written to the database.",
+                exchangeRateWriteQueue::getLagSeconds);
+        metrics.counter("rate_write_behind_submitted_total", "Rate updates accepted by the write-behind queue.",
+                exchangeRateWriteQueue::getSubmitted);
+        metrics.counter("rate_write_behind_coalesced_total", "Rate updates replaced by a newer update before being written.",
+                exchangeRateWriteQueue::getCoalesced);
+        metrics.counter("rate_write_behind_flushed_total", "Rate updates written to the database.",
+                exchangeRateWriteQueue::getFlushed);
+        metrics.counter("rate_write_behind_failures_total", "Failed write-behind batch commits.",
+                exchangeRateWriteQueue::getFailures);
+    }
+
+    private void initDataBase(ServletContext context, ApplicationProperties properties, DataSource dataSource) {
+        SchemaMigrator schemaMigrator = new SchemaMigrator(dataSource);
+        int applied = schemaMigrator.migrate();
+        if (applied > 0) context.log("Applied " + applied + " schema migration(s)");
+
+        if (properties.getBoolean("db.seed", true) && schemaMigrator.seedIfEmpty())
+            context.log("Seeded empty database with sample currencies and exchange rates");
+    }
 }
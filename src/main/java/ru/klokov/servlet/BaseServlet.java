@@ -1,47 +1,332 @@
 package ru.klokov.servlet;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.cache.CachedResponse;
+import ru.klokov.cache.CapturingResponseWrapper;
+import ru.klokov.cache.ResponseCache;
+import ru.klokov.compression.ContentEncoding;
+import ru.klokov.compression.ResponseCompressor;
+import ru.klokov.dao.DataVersion;
 import ru.klokov.exception.DatabaseException;
 import ru.klokov.exception.ResourceAlreadyExistsException;
 import ru.klokov.exception.ResourceNotFoundException;
+import ru.klokov.exception.ServiceUnavailableException;
 import ru.klokov.exception.WrongParametersException;
+import ru.klokov.metrics.LatencyHistogram;
+import ru.klokov.metrics.MetricsRegistry;
 import ru.klokov.response.ErrorResponse;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.ResponseFormat;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 public class BaseServlet extends HttpServlet {
+    private static final String RESPONSE_FORMAT_ATTRIBUTE = ResponseFormat.class.getName();
+
     protected ObjectMapper mapper;
+    protected DataVersion dataVersion;
+    protected ResponseCache responseCache;
+    protected MetricsRegistry metrics;
+    private ResponseCompressor responseCompressor;
+    private Map<ResponseFormat, ObjectMapper> responseMappers;
+    private final Map<String, LatencyHistogram> requestHistograms = new ConcurrentHashMap<>();
+    private ExecutorService requestExecutor;
+    private long asyncTimeoutMillis;
+
     @Override
+    @SuppressWarnings("unchecked")
     public void init(ServletConfig config) throws ServletException {
+        super.init(config);
         mapper = (ObjectMapper) config.getServletContext().getAttribute("mapper");
+        responseMappers = (Map<ResponseFormat, ObjectMapper>) config.getServletContext().getAttribute("responseMappers");
+        dataVersion = (DataVersion) config.getServletContext().getAttribute("dataVersion");
+        responseCache = (ResponseCache) config.getServletContext().getAttribute("responseCache");
+        metrics = (MetricsRegistry) config.getServletContext().getAttribute("metrics");
+        requestExecutor = (ExecutorService) config.getServletContext().getAttribute("requestExecutor");
+        responseCompressor = (ResponseCompressor) config.getServletContext().getAttribute("responseCompressor");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        asyncTimeoutMillis = properties.getLong("servlet.async.timeoutMillis", 30000);
     }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        long start = System.nanoTime();
+        if (requestExecutor == null || !req.isAsyncSupported()) {
+            try {
+                handle(req, resp);
+            } finally {
+                requestHistogram(req.getMethod()).recordSince(start);
+            }
+            return;
+        }
+
+        String method = req.getMethod();
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(asyncTimeoutMillis);
+        AsyncRequest asyncRequest = new AsyncRequest(asyncContext, resp);
+        asyncContext.addListener(asyncRequest);
+        try {
+            requestExecutor.execute(() -> handleAsync(req, resp, asyncRequest, method, start));
+        } catch (RejectedExecutionException e) {
+            countError(e, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncRequest.fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void handleAsync(HttpServletRequest req, HttpServletResponse resp, AsyncRequest asyncRequest, String method,
+                             long start) {
+        try {
+            if (asyncRequest.isOpen()) handle(req, asyncRequest.getResponse());
+        } catch (Exception e) {
+            if (asyncRequest.isOpen()) {
+                log("Request processing failed: " + req.getRequestURI(), e);
+                countError(e, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                asyncRequest.fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            requestHistogram(method).recordSince(start);
+            asyncRequest.complete();
+        }
+    }
+
+    private LatencyHistogram requestHistogram(String method) {
+        LatencyHistogram histogram = requestHistograms.get(method);
+        if (histogram == null) {
+            histogram = requestHistograms.computeIfAbsent(method, key -> metrics.histogram("http_request_duration_seconds",
+                    "Time to handle an HTTP request, by servlet and method.", "servlet", getClass().getSimpleName(), "method", key));
+        }
+        return histogram;
+    }
+
+    private void countError(Exception e, int code) {
+        metrics.counter("http_errors_total", "Exceptions mapped to HTTP error responses, by servlet, exception type and status.",
+                "servlet", getClass().getSimpleName(), "exception", e.getClass().getSimpleName(), "status", String.valueOf(code))
+                .increment();
+    }
+
+    private void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        req.setAttribute(RESPONSE_FORMAT_ATTRIBUTE, ResponseFormat.negotiate(req.getHeader("Accept")));
+        if (req.getMethod().equals("GET")) resp.addHeader("Vary", "Accept");
+
+        if (req.getMethod().equals("GET") && isCacheableGet() && hasCurrentRepresentation(req)) {
+            long version = dataVersion.get();
+            String eTag = eTag(req, version);
+            String matchedETag = matchETag(req.getHeader("If-None-Match"), eTag);
+            if (matchedETag != null) {
+                resp.setHeader("ETag", matchedETag);
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            resp.setHeader("ETag", eTag);
+            if (req.getQueryString() == null) {
+                serveCached(req, resp, version);
+                return;
+            }
+        }
+
+        dispatch(req, resp);
+    }
+
+    private void serveCached(HttpServletRequest req, HttpServletResponse resp, long version) throws IOException {
+        String key = cacheKey(req);
+        CachedResponse cachedResponse = responseCache.get(key, version);
+
+        if (cachedResponse != null) {
+            writeCached(req, resp, cachedResponse);
+            return;
+        }
+
+        CapturingResponseWrapper capturingResponse = new CapturingResponseWrapper(resp, responseCache.getMaxEntryBytes());
+        dispatch(req, capturingResponse);
+
+        if (capturingResponse.getStatus() == HttpServletResponse.SC_OK && capturingResponse.isCaptureComplete())
+            responseCache.put(key, version, capturingResponse.getContentType(), capturingResponse.getCapturedBytes());
+    }
+
+    private void dispatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
             if (req.getMethod().equals("PATCH")) {
                 doPatch(req, resp);
             } else super.service(req, resp);
         } catch (DatabaseException|ServletException e) {
-            ResponseHandler.sendResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                    mapper.writeValueAsString(new ErrorResponse(e.getMessage())));
+            sendError(req, resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e);
         } catch (ResourceNotFoundException e) {
-            ResponseHandler.sendResponse(resp, HttpServletResponse.SC_NOT_FOUND,
-                    mapper.writeValueAsString(new ErrorResponse(e.getMessage())));
+            sendError(req, resp, HttpServletResponse.SC_NOT_FOUND, e);
         } catch (ResourceAlreadyExistsException e) {
-            ResponseHandler.sendResponse(resp, HttpServletResponse.SC_CONFLICT,
-                    mapper.writeValueAsString(new ErrorResponse(e.getMessage())));
+            sendError(req, resp, HttpServletResponse.SC_CONFLICT, e);
         } catch (WrongParametersException e) {
-            ResponseHandler.sendResponse(resp, HttpServletResponse.SC_BAD_REQUEST,
-                    mapper.writeValueAsString(new ErrorResponse(e.getMessage())));
+            sendError(req, resp, HttpServletResponse.SC_BAD_REQUEST, e);
+        } catch (ServiceUnavailableException e) {
+            sendError(req, resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e);
+        }
+    }
+
+    protected void writeCached(HttpServletRequest req, HttpServletResponse resp, CachedResponse cachedResponse) throws IOException {
+        byte[] body = cachedResponse.getBody();
+        ContentEncoding encoding = responseCompressor == null ? null
+                : responseCompressor.select(req.getHeader("Accept-Encoding"), cachedResponse.getContentType(), body.length);
+        if (encoding != null) {
+            body = responseCompressor.variant(cachedResponse, encoding);
+            resp.setHeader("Content-Encoding", encoding.getToken());
+            if (resp.containsHeader("ETag")) resp.setHeader("ETag", encoding.eTag(resp.getHeader("ETag")));
         }
+
+        resp.setContentType(cachedResponse.getContentType());
+        resp.setContentLength(body.length);
+        try (OutputStream outputStream = resp.getOutputStream()) {
+            outputStream.write(body);
+        }
+    }
+
+    protected ResponseFormat responseFormat(HttpServletRequest req) {
+        ResponseFormat format = (ResponseFormat) req.getAttribute(RESPONSE_FORMAT_ATTRIBUTE);
+        return format == null ? ResponseFormat.JSON : format;
+    }
+
+    protected ObjectMapper responseMapper(HttpServletRequest req) {
+        return responseMappers.get(responseFormat(req));
+    }
+
+    protected String responseContentType(HttpServletRequest req) {
+        return responseFormat(req).getMediaType();
     }
 
     protected void doPatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {}
+
+    protected boolean isCacheableGet() {
+        return false;
+    }
+
+    // A validator only stands for a representation that exists, so requests for missing resources skip the ETag and
+    // are dispatched to produce their error instead of a 304.
+    protected boolean hasCurrentRepresentation(HttpServletRequest req) {
+        return true;
+    }
+
+    protected void invalidateCached(String... keys) {
+        for (String key : keys) {
+            for (ResponseFormat format : ResponseFormat.values()) {
+                responseCache.invalidate(cacheKey(key, format));
+            }
+        }
+    }
+
+    private String cacheKey(HttpServletRequest req) {
+        return cacheKey(req.getServletPath() + (req.getPathInfo() == null ? "" : req.getPathInfo().toUpperCase()),
+                responseFormat(req));
+    }
+
+    private static String cacheKey(String path, ResponseFormat format) {
+        return format == ResponseFormat.JSON ? path : path + ";" + format.name().toLowerCase();
+    }
+
+    private String eTag(HttpServletRequest req, long version) {
+        String resource = cacheKey(req.getRequestURI() + (req.getQueryString() == null ? "" : "?" + req.getQueryString()),
+                responseFormat(req));
+        return "\"" + Long.toHexString(version) + "-" + Integer.toHexString(resource.hashCode()) + "\"";
+    }
+
+    private String matchETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return null;
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) trimmed = trimmed.substring(2);
+            if (trimmed.equals("*") || trimmed.equals(eTag)) return eTag;
+            for (ContentEncoding encoding : ContentEncoding.values()) {
+                if (trimmed.equals(encoding.eTag(eTag))) return trimmed;
+            }
+        }
+        return null;
+    }
+
+    // The handler only sees the guarded response, so once a timeout or error completes the request its late writes
+    // are dropped instead of reaching a response the container may already have recycled.
+    private final class AsyncRequest implements AsyncListener {
+        private final AsyncContext asyncContext;
+        private final GuardedResponseWrapper response;
+
+        private AsyncRequest(AsyncContext asyncContext, HttpServletResponse resp) {
+            this.asyncContext = asyncContext;
+            this.response = new GuardedResponseWrapper(resp);
+        }
+
+        private HttpServletResponse getResponse() {
+            return response;
+        }
+
+        private boolean isOpen() {
+            return response.isOpen();
+        }
+
+        private void complete() {
+            response.close(resp -> asyncContext.complete());
+        }
+
+        private void fail(int code) {
+            response.close(resp -> {
+                if (!resp.isCommitted()) {
+                    reset(resp);
+                    resp.setStatus(code);
+                }
+                asyncContext.complete();
+            });
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            countError(new TimeoutException("Request timed out after " + asyncTimeoutMillis + " ms"),
+                    HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            countError(event.getThrowable() instanceof Exception e ? e : new ServletException(event.getThrowable()),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            response.close(resp -> {});
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static void reset(HttpServletResponse resp) {
+        List<String> vary = List.copyOf(resp.getHeaders("Vary"));
+        resp.reset();
+        for (String value : vary) {
+            resp.addHeader("Vary", value);
+        }
+    }
+
+    private void sendError(HttpServletRequest req, HttpServletResponse resp, int code, Exception e) throws IOException {
+        countError(e, code);
+        if (resp.isCommitted()) return;
+
+        reset(resp);
+        resp.setContentType(responseContentType(req));
+        ResponseHandler.sendJson(resp, code, responseMapper(req), new ErrorResponse(e.getMessage()));
+    }
 }
@@ -0,0 +1,121 @@
+package ru.klokov.servlet;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.dao.IExchangeRateDAO;
+import ru.klokov.exception.ResourceNotFoundException;
+import ru.klokov.exception.WrongParametersException;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.request.ExchangeRequest;
+import ru.klokov.response.ErrorResponse;
+import ru.klokov.service.ExchangeService;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.InstantParameter;
+import ru.klokov.util.ResponseHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@WebServlet(value = "/exchange/batch", asyncSupported = true)
+public class BatchExchangeServlet extends BaseServlet {
+    private RateSnapshotHolder rateSnapshotHolder;
+    private IExchangeRateDAO exchangeRateDAO;
+    private ExchangeService exchangeService;
+    private int maxBatchSize;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        exchangeService = (ExchangeService) config.getServletContext().getAttribute("exchangeService");
+        exchangeRateDAO = (IExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        maxBatchSize = properties.getInt("exchange.batch.maxSize", 10000);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(responseContentType(req));
+
+        List<ExchangeRequest> exchangeRequests;
+        try {
+            exchangeRequests = mapper.readValue(req.getInputStream(), new TypeReference<List<ExchangeRequest>>() {});
+        } catch (JsonProcessingException e) {
+            throw new WrongParametersException("Request body must be a JSON array of conversion requests!");
+        }
+
+        if (exchangeRequests == null || exchangeRequests.isEmpty())
+            throw new WrongParametersException("Request body must contain at least one conversion request!");
+        if (exchangeRequests.size() > maxBatchSize)
+            throw new WrongParametersException("Batch size must not exceed " + maxBatchSize + " conversion requests!");
+
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Map<String, Optional<Currency>> currencies = new HashMap<>();
+        Map<String, Object> rates = new HashMap<>();
+        Map<Instant, List<ExchangeRate>> ratesAsOf = new HashMap<>();
+        List<Object> results = new ArrayList<>(exchangeRequests.size());
+
+        for (ExchangeRequest exchangeRequest : exchangeRequests) {
+            try {
+                results.add(convert(snapshot, exchangeRequest, currencies, rates, ratesAsOf));
+            } catch (ResourceNotFoundException | WrongParametersException e) {
+                results.add(new ErrorResponse(e.getMessage()));
+            }
+        }
+
+        ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req), results::forEach);
+    }
+
+    private Object convert(RateSnapshot snapshot, ExchangeRequest exchangeRequest,
+                           Map<String, Optional<Currency>> currencies, Map<String, Object> rates,
+                           Map<Instant, List<ExchangeRate>> ratesAsOf) {
+        if (exchangeRequest == null || exchangeParamsNotValid(exchangeRequest))
+            throw new WrongParametersException("Wrong currency codes or amount parameters!");
+
+        String fromCode = exchangeRequest.getFrom();
+        String toCode = exchangeRequest.getTo();
+        Instant asOf = InstantParameter.parse(exchangeRequest.getAsOf());
+
+        Optional<Currency> from = currencies.computeIfAbsent(fromCode, snapshot::findCurrencyByCode);
+        Optional<Currency> to = currencies.computeIfAbsent(toCode, snapshot::findCurrencyByCode);
+
+        if (from.isEmpty()) throw new ResourceNotFoundException("Currency with code " + fromCode + " not found");
+        if (to.isEmpty()) throw new ResourceNotFoundException("Currency with code " + toCode + " not found");
+
+        Object rate = rates.computeIfAbsent(fromCode + toCode + "@" + asOf, pair -> {
+            try {
+                return asOf == null
+                        ? exchangeService.getRate(snapshot, from.get(), to.get())
+                        : exchangeService.getRateAsOf(snapshot, from.get(), to.get(), asOf,
+                                instant -> ratesAsOf.computeIfAbsent(instant, exchangeRateDAO::findAllAsOf));
+            } catch (ResourceNotFoundException e) {
+                return e;
+            }
+        });
+
+        if (rate instanceof ResourceNotFoundException) throw (ResourceNotFoundException) rate;
+
+        return exchangeService.convert(from.get(), to.get(), (BigDecimal) rate, exchangeRequest.getAmount());
+    }
+
+    private boolean exchangeParamsNotValid(ExchangeRequest exchangeRequest) {
+        String from = exchangeRequest.getFrom();
+        String to = exchangeRequest.getTo();
+        return from == null || from.length() != 3 || to == null || to.length() != 3 ||
+                exchangeRequest.getAmount() == null;
+    }
+}
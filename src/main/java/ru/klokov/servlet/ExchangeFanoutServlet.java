@@ -0,0 +1,59 @@
+package ru.klokov.servlet;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.exception.ResourceNotFoundException;
+import ru.klokov.exception.WrongParametersException;
+import ru.klokov.model.Currency;
+import ru.klokov.response.ExchangeResponse;
+import ru.klokov.service.ExchangeService;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.DecimalParameter;
+import ru.klokov.util.ResponseHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+@WebServlet(value = "/exchange/fanout", asyncSupported = true)
+public class ExchangeFanoutServlet extends BaseServlet {
+    private RateSnapshotHolder rateSnapshotHolder;
+    private ExchangeService exchangeService;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        exchangeService = (ExchangeService) config.getServletContext().getAttribute("exchangeService");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String fromCode = req.getParameter("from");
+        String amountParam = req.getParameter("amount");
+        BigDecimal amount = DecimalParameter.parseAmount(amountParam);
+
+        resp.setContentType(responseContentType(req));
+
+        if (fanoutParamsNotValid(fromCode, amountParam, amount))
+            throw new WrongParametersException("Wrong currency code or amount parameters!");
+
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Optional<Currency> from = snapshot.findCurrencyByCode(fromCode);
+
+        if (from.isEmpty()) throw new ResourceNotFoundException("Currency with code " + fromCode + " not found");
+
+        List<ExchangeResponse> exchangeResponses = exchangeService.convertToAll(snapshot, from.get(), amount);
+
+        ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeResponses::forEach);
+    }
+
+    private boolean fanoutParamsNotValid(String from, String amountParam, BigDecimal amount) {
+        return from == null || from.length() != 3 || amountParam == null || amountParam.isBlank() || amount == null;
+    }
+}
@@ -5,27 +5,31 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ru.klokov.dao.CurrencyDAO;
-import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.exception.ResourceNotFoundException;
 import ru.klokov.exception.WrongParametersException;
 import ru.klokov.model.Currency;
+import ru.klokov.response.ExchangeResponse;
 import ru.klokov.service.ExchangeService;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.DecimalParameter;
+import ru.klokov.util.InstantParameter;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Optional;
 
-@WebServlet("/exchange")
+@WebServlet(value = "/exchange", asyncSupported = true)
 public class ExchangeServlet extends BaseServlet {
-    private ICurrencyDAO currencyDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
     private ExchangeService exchangeService;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        currencyDAO = (CurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
         exchangeService = (ExchangeService) config.getServletContext().getAttribute("exchangeService");
     }
 
@@ -34,16 +38,17 @@ public class ExchangeServlet extends BaseServlet {
         String fromCode = req.getParameter("from");
         String toCode = req.getParameter("to");
         String amountParam = req.getParameter("amount");
+        Instant asOf = InstantParameter.parse(req.getParameter("asOf"));
+        BigDecimal amount = DecimalParameter.parseAmount(amountParam);
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
-        if (exchangeParamsNotValid(fromCode, toCode, amountParam))
+        if (exchangeParamsNotValid(fromCode, toCode, amountParam, amount))
             throw new WrongParametersException("Wrong currency codes or amount parameters!");
 
-        BigDecimal amount = BigDecimal.valueOf(Double.parseDouble(amountParam));
-
-        Optional<Currency> from = currencyDAO.findByCode(fromCode);
-        Optional<Currency> to = currencyDAO.findByCode(toCode);
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Optional<Currency> from = snapshot.findCurrencyByCode(fromCode);
+        Optional<Currency> to = snapshot.findCurrencyByCode(toCode);
 
         if (from.isEmpty()) throw new ResourceNotFoundException("Currency with code " + fromCode + " not found");
         if (to.isEmpty()) throw new ResourceNotFoundException("Currency with code " + toCode + " not found");
@@ -51,21 +56,17 @@ public class ExchangeServlet extends BaseServlet {
         Currency fromCurrency = from.get();
         Currency toCurrency = to.get();
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(exchangeService.convert(fromCurrency, toCurrency, amount)));
-    }
+        ExchangeResponse exchangeResponse = asOf == null
+                ? exchangeService.convert(snapshot, fromCurrency, toCurrency, amount)
+                : exchangeService.convert(fromCurrency, toCurrency,
+                        exchangeService.getRateAsOf(snapshot, fromCurrency, toCurrency, asOf), amount);
 
-    private boolean exchangeParamsNotValid(String from, String to, String amount) {
-        return from.isBlank() || from.length() != 3 || to.isBlank() || to.length() != 3 ||
-                amount.isBlank() || !amountParameterIsDouble(amount);
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeResponse);
     }
 
-    private boolean amountParameterIsDouble(String amount) {
-        try {
-            Double.parseDouble(amount);
-        } catch (NumberFormatException e) {
-            return false;
-        }
-        return true;
+    private boolean exchangeParamsNotValid(String from, String to, String amountParam, BigDecimal amount) {
+        return from.isBlank() || from.length() != 3 || to.isBlank() || to.length() != 3 ||
+                amountParam.isBlank() || amount == null;
     }
 }
 
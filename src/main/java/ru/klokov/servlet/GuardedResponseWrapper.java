@@ -0,0 +1,281 @@
+package ru.klokov.servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+final class GuardedResponseWrapper extends HttpServletResponseWrapper {
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean closed;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    GuardedResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    boolean isOpen() {
+        lock.lock();
+        try {
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Once closed the underlying response may already belong to another request, so every later call is dropped.
+    boolean close(Consumer<HttpServletResponse> lastAction) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            closed = true;
+            lastAction.accept((HttpServletResponse) getResponse());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) outputStream = new GuardedOutputStream(guardedStream(super::getOutputStream));
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        return writer;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return guarded(super::isCommitted, true);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return guarded(() -> super.containsHeader(name), false);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return guarded(() -> super.getHeader(name), null);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        return guarded(() -> super.getHeaders(name), List.of());
+    }
+
+    @Override
+    public String getContentType() {
+        return guarded(super::getContentType, null);
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return guarded(super::getCharacterEncoding, "ISO-8859-1");
+    }
+
+    @Override
+    public int getStatus() {
+        return guarded(super::getStatus, SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        guarded(() -> super.setStatus(sc));
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        guardedIO(() -> super.sendError(sc, msg));
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        guardedIO(() -> super.sendError(sc));
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        guardedIO(() -> super.sendRedirect(location));
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        guarded(() -> super.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        guarded(() -> super.addHeader(name, value));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        guarded(() -> super.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        guarded(() -> super.addIntHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        guarded(() -> super.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        guarded(() -> super.addDateHeader(name, date));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        guarded(() -> super.addCookie(cookie));
+    }
+
+    @Override
+    public void setContentType(String type) {
+        guarded(() -> super.setContentType(type));
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        guarded(() -> super.setContentLength(len));
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        guarded(() -> super.setContentLengthLong(len));
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        guarded(() -> super.setCharacterEncoding(charset));
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        guarded(() -> super.setLocale(loc));
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        guarded(() -> super.setBufferSize(size));
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        guardedIO(super::flushBuffer);
+    }
+
+    @Override
+    public void reset() {
+        guarded(super::reset);
+    }
+
+    @Override
+    public void resetBuffer() {
+        guarded(super::resetBuffer);
+    }
+
+    private void guarded(Runnable action) {
+        lock.lock();
+        try {
+            if (!closed) action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T guarded(Supplier<T> getter, T closedValue) {
+        lock.lock();
+        try {
+            return closed ? closedValue : getter.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void guardedIO(IOAction action) throws IOException {
+        lock.lock();
+        try {
+            if (!closed) action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServletOutputStream guardedStream(IOSupplier<ServletOutputStream> supplier) throws IOException {
+        lock.lock();
+        try {
+            return closed ? null : supplier.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        private GuardedOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            guardedIO(() -> delegate.write(b));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            guardedIO(() -> delegate.write(b, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            guardedIO(delegate::flush);
+        }
+
+        @Override
+        public void close() throws IOException {
+            guardedIO(delegate::close);
+        }
+
+        @Override
+        public boolean isReady() {
+            return isOpen() && delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            guarded(() -> delegate.setWriteListener(writeListener));
+        }
+    }
+}
@@ -5,35 +5,64 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ru.klokov.dao.CurrencyDAO;
 import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.exception.ResourceAlreadyExistsException;
 import ru.klokov.exception.WrongParametersException;
 import ru.klokov.model.Currency;
 import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.FieldProjection;
+import ru.klokov.util.PageParameter;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
-@WebServlet("/currencies")
+@WebServlet(value = "/currencies", asyncSupported = true)
 public class CurrenciesServlet extends BaseServlet {
+    private static final List<String> FIELDS = List.of("id", "code", "fullName", "sign");
+
     private ICurrencyDAO currencyDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
+    private int defaultPageLimit;
+    private int maxPageLimit;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        currencyDAO = (CurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        currencyDAO = (ICurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        defaultPageLimit = properties.getInt("pagination.defaultLimit", 100);
+        maxPageLimit = properties.getInt("pagination.maxLimit", 1000);
+    }
+
+    @Override
+    protected boolean isCacheableGet() {
+        return true;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
+        FieldProjection projection = FieldProjection.parse(req.getParameter("fields"), FIELDS);
+
+        if (!PageParameter.isRequested(req, "limit", "after")) {
+            List<Currency> currencies = currencyDAO.findAll();
+            ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req), projection.apply(mapper, currencies::forEach));
+            return;
+        }
+
+        String after = PageParameter.parseCode("after", req.getParameter("after"), 3);
+        int limit = PageParameter.parseLimit(req.getParameter("limit"), defaultPageLimit, maxPageLimit);
+        List<Currency> currencies = currencyDAO.findPage(after, limit);
 
-        List<Currency>currencies = currencyDAO.findAll();
+        if (currencies.size() == limit)
+            resp.setHeader("Link", PageParameter.nextLink(req, currencies.get(limit - 1).getCode()));
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(currencies));
+        ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req), projection.apply(mapper, currencies::forEach));
     }
 
     @Override
@@ -42,7 +71,7 @@ public class CurrenciesServlet extends BaseServlet {
         String code = req.getParameter("code");
         String sign = req.getParameter("sign");
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
         if (currencyParamsNotValid(name, code, sign))
             throw new WrongParametersException("Wrong name, code or sign parameters!");
@@ -52,9 +81,10 @@ public class CurrenciesServlet extends BaseServlet {
         if (currency.isPresent())
             throw new ResourceAlreadyExistsException("Currency with code " + code + " already exists!");
 
-        Currency createdCurrency = currencyDAO.save(new Currency(code, name, sign));
+        Currency createdCurrency = rateSnapshotHolder.saveCurrency(() -> currencyDAO.save(new Currency(code, name, sign)));
+        invalidateCached("/currencies", "/currency/" + code.toUpperCase());
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(createdCurrency));
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), createdCurrency);
     }
 
     private boolean currencyParamsNotValid(String name, String code, String sign) {
@@ -5,32 +5,47 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ru.klokov.dao.CurrencyDAO;
 import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.exception.ResourceNotFoundException;
 import ru.klokov.exception.WrongParametersException;
 import ru.klokov.model.Currency;
 import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.RateSnapshotHolder;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.IOException;
 import java.util.Optional;
 
-@WebServlet("/currency/*")
+@WebServlet(value = "/currency/*", asyncSupported = true)
 public class CurrencyServlet extends BaseServlet {
     private ICurrencyDAO currencyDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        currencyDAO = (CurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        currencyDAO = (ICurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+    }
+
+    @Override
+    protected boolean isCacheableGet() {
+        return true;
+    }
+
+    @Override
+    protected boolean hasCurrentRepresentation(HttpServletRequest req) {
+        String pathInfo = req.getPathInfo();
+        if (pathInfo == null || pathInfo.length() != 4) return false;
+
+        return rateSnapshotHolder.get().findCurrencyByCode(pathInfo.substring(1).toUpperCase()).isPresent();
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String pathInfo = req.getPathInfo();
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
         if (pathInfo.isBlank() || pathInfo.substring(1).length() != 3)
             throw new WrongParametersException("Wrong currency code parameter!");
@@ -42,6 +57,6 @@ public class CurrencyServlet extends BaseServlet {
         if (currency.isEmpty())
             throw new ResourceNotFoundException("Currency not found with code " + currencyCode);
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(currency.get()));
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), currency.get());
     }
 }
@@ -5,42 +5,77 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ru.klokov.dao.CurrencyDAO;
-import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.dao.ExchangeRateWriteQueue;
 import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.dao.IExchangeRateDAO;
+import ru.klokov.exception.DatabaseException;
 import ru.klokov.exception.ResourceNotFoundException;
 import ru.klokov.exception.WrongParametersException;
 import ru.klokov.model.Currency;
 import ru.klokov.model.ExchangeRate;
 import ru.klokov.response.ExchangeRateResponse;
 import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.DecimalParameter;
+import ru.klokov.util.InstantParameter;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-@WebServlet("/exchangeRate/*")
+@WebServlet(value = "/exchangeRate/*", asyncSupported = true)
 public class ExchangeRateServlet extends BaseServlet {
     private ICurrencyDAO currencyDAO;
     private IExchangeRateDAO exchangeRateDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
+    private ExchangeRateWriteQueue exchangeRateWriteQueue;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        currencyDAO = (CurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
-        exchangeRateDAO = (ExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        currencyDAO = (ICurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        exchangeRateDAO = (IExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        exchangeRateWriteQueue = (ExchangeRateWriteQueue) config.getServletContext().getAttribute("exchangeRateWriteQueue");
+    }
+
+    @Override
+    protected boolean isCacheableGet() {
+        return true;
+    }
+
+    @Override
+    protected boolean hasCurrentRepresentation(HttpServletRequest req) {
+        String pathInfo = req.getPathInfo();
+        if (pathInfo == null || pathInfo.length() != 7) return false;
+
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Optional<Currency> baseCurrency = snapshot.findCurrencyByCode(pathInfo.substring(1, 4).toUpperCase());
+        Optional<Currency> targetCurrency = snapshot.findCurrencyByCode(pathInfo.substring(4).toUpperCase());
+        if (baseCurrency.isEmpty() || targetCurrency.isEmpty()) return false;
+        if (!snapshot.hasExchangeRate(baseCurrency.get(), targetCurrency.get())) return false;
+
+        try {
+            Instant asOf = InstantParameter.parse(req.getParameter("asOf"));
+            return asOf == null || exchangeRateDAO.findRateAsOf(baseCurrency.get(), targetCurrency.get(), asOf).isPresent();
+        } catch (WrongParametersException | DatabaseException e) {
+            return false;
+        }
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String pathInfo = req.getPathInfo();
+        Instant asOf = InstantParameter.parse(req.getParameter("asOf"));
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
         if (pathInfo.isBlank() || pathInfo.substring(1).length() != 6)
             throw new WrongParametersException("Wrong currency codes or rate parameters!");
@@ -48,45 +83,59 @@ public class ExchangeRateServlet extends BaseServlet {
         String baseCurrencyCode = pathInfo.substring(1, 4).toUpperCase();
         String targetCurrencyCode = pathInfo.substring(4).toUpperCase();
 
-        Optional<Currency> baseCurrency = currencyDAO.findByCode(baseCurrencyCode);
-        Optional<Currency> targetCurrency = currencyDAO.findByCode(targetCurrencyCode);
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Optional<Currency> baseCurrency = snapshot.findCurrencyByCode(baseCurrencyCode);
+        Optional<Currency> targetCurrency = snapshot.findCurrencyByCode(targetCurrencyCode);
 
         if (baseCurrency.isEmpty())
             throw new ResourceNotFoundException("Currency with code " + baseCurrencyCode + " not found!");
         if (targetCurrency.isEmpty())
             throw new ResourceNotFoundException("Currency with code " + targetCurrencyCode + " not found!");
 
-        Optional<ExchangeRate> exchangeRate = exchangeRateDAO.findByCurrencyPair(baseCurrency.get(), targetCurrency.get());
+        Optional<ExchangeRate> exchangeRate = snapshot.findExchangeRate(baseCurrency.get(), targetCurrency.get());
 
         if (exchangeRate.isEmpty())
             throw new ResourceNotFoundException("Exchange rate with code pair " + baseCurrencyCode + "-" + targetCurrencyCode + " not found!");
 
         ExchangeRate rate = exchangeRate.get();
+        BigDecimal rateValue = rate.getRate();
+        if (asOf != null) {
+            Optional<BigDecimal> rateAsOf = exchangeRateDAO.findRateAsOf(baseCurrency.get(), targetCurrency.get(), asOf);
+            if (rateAsOf.isEmpty())
+                throw new ResourceNotFoundException("Exchange rate with code pair " + baseCurrencyCode + "-" + targetCurrencyCode + " not found at " + asOf + "!");
+            rateValue = rateAsOf.get();
+        }
+
         ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
                 rate.getId(),
                 baseCurrency.get(),
                 targetCurrency.get(),
-                rate.getRate()
+                rateValue
         );
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(exchangeRateResponse));
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeRateResponse);
     }
 
     protected void doPatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String pathInfo = req.getPathInfo();
-        String rate = getRateFromRequest(req).substring(5);
+        BigDecimal rate = DecimalParameter.parseRate(getRateFromRequest(req).substring(5));
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
         if (pathInfo.isBlank() || pathInfo.substring(1).length() != 6)
             throw new WrongParametersException("Currency codes not present in address!");
 
-        if (!rateParameterIsDouble(rate))
+        if (rate == null)
             throw new WrongParametersException("Rate parameter value must be a number!");
 
         String baseCurrencyCode = pathInfo.substring(1, 4).toUpperCase();
         String targetCurrencyCode = pathInfo.substring(4).toUpperCase();
 
+        if (exchangeRateWriteQueue != null) {
+            patchWriteBehind(req, resp, baseCurrencyCode, targetCurrencyCode, rate);
+            return;
+        }
+
         Optional<Currency> baseCurrency = currencyDAO.findByCode(baseCurrencyCode);
         Optional<Currency> targetCurrency = currencyDAO.findByCode(targetCurrencyCode);
 
@@ -100,7 +149,47 @@ public class ExchangeRateServlet extends BaseServlet {
         if (exchangeRate.isEmpty())
             throw new ResourceNotFoundException("Exchange rate with code pair " + baseCurrencyCode + "-" + targetCurrencyCode + " not found!");
 
-        ExchangeRate updatedExchangeRate = exchangeRateDAO.update(exchangeRate.get(), BigDecimal.valueOf(Double.parseDouble(rate)));
+        ExchangeRate updatedExchangeRate = rateSnapshotHolder.saveExchangeRate(
+                () -> exchangeRateDAO.update(exchangeRate.get(), rate));
+        invalidateCached("/exchangeRates", "/exchangeRate/" + baseCurrencyCode + targetCurrencyCode);
+
+        ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
+                updatedExchangeRate.getId(),
+                baseCurrency.get(),
+                targetCurrency.get(),
+                updatedExchangeRate.getRate()
+        );
+
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeRateResponse);
+    }
+
+    private void patchWriteBehind(HttpServletRequest req, HttpServletResponse resp, String baseCurrencyCode,
+                                  String targetCurrencyCode, BigDecimal rate) throws IOException {
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        Optional<Currency> baseCurrency = snapshot.findCurrencyByCode(baseCurrencyCode);
+        Optional<Currency> targetCurrency = snapshot.findCurrencyByCode(targetCurrencyCode);
+
+        if (baseCurrency.isEmpty())
+            throw new ResourceNotFoundException("Currency with code " + baseCurrencyCode + " not found!");
+        if (targetCurrency.isEmpty())
+            throw new ResourceNotFoundException("Currency with code " + targetCurrencyCode + " not found!");
+
+        Optional<ExchangeRate> exchangeRate = snapshot.findExchangeRate(baseCurrency.get(), targetCurrency.get());
+
+        if (exchangeRate.isEmpty())
+            throw new ResourceNotFoundException("Exchange rate with code pair " + baseCurrencyCode + "-" + targetCurrencyCode + " not found!");
+
+        ExchangeRate updatedExchangeRate = new ExchangeRate(
+                exchangeRate.get().getId(),
+                exchangeRate.get().getBaseCurrencyId(),
+                exchangeRate.get().getTargetCurrencyId(),
+                rate
+        );
+        exchangeRateWriteQueue.reserve(updatedExchangeRate);
+        CompletableFuture<Void> flush = rateSnapshotHolder.saveExchangeRate(updatedExchangeRate,
+                () -> exchangeRateWriteQueue.enqueue(updatedExchangeRate));
+        invalidateCached("/exchangeRates", "/exchangeRate/" + baseCurrencyCode + targetCurrencyCode);
+        exchangeRateWriteQueue.awaitDurability(flush);
 
         ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
                 updatedExchangeRate.getId(),
@@ -109,7 +198,7 @@ public class ExchangeRateServlet extends BaseServlet {
                 updatedExchangeRate.getRate()
         );
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(exchangeRateResponse));
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeRateResponse);
     }
 
     private String getRateFromRequest(HttpServletRequest req) {
@@ -121,14 +210,4 @@ public class ExchangeRateServlet extends BaseServlet {
         }
         return bufferedReader.lines().collect(Collectors.joining("\n"));
     }
-
-    private boolean rateParameterIsDouble(String rate) {
-        try {
-            Double.parseDouble(rate);
-        }
-        catch (NumberFormatException e) {
-            return false;
-        }
-        return true;
-    }
 }
@@ -0,0 +1,179 @@
+package ru.klokov.servlet.exchangeRate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.dao.ExchangeRateWriteQueue;
+import ru.klokov.dao.IExchangeRateDAO;
+import ru.klokov.exception.WrongParametersException;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.request.ExchangeRateRequest;
+import ru.klokov.response.BulkImportResponse;
+import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.ResponseHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@WebServlet(value = "/exchangeRates/import", asyncSupported = true)
+public class ExchangeRatesImportServlet extends BaseServlet {
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private IExchangeRateDAO exchangeRateDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
+    private ExchangeRateWriteQueue exchangeRateWriteQueue;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        exchangeRateDAO = (IExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        exchangeRateWriteQueue = (ExchangeRateWriteQueue) config.getServletContext().getAttribute("exchangeRateWriteQueue");
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(responseContentType(req));
+
+        ImportBatch batch = new ImportBatch(rateSnapshotHolder.get());
+        String contentType = req.getContentType();
+
+        if (contentType != null && contentType.startsWith("text/csv")) readCsv(req, batch);
+        else readJson(req, batch);
+
+        int inserted = 0;
+        if (!batch.rates.isEmpty()) {
+            // Queued PATCHes are written first so they cannot overwrite the import after it lands.
+            inserted = rateSnapshotHolder.saveExchangeRates(() -> {
+                if (exchangeRateWriteQueue != null) exchangeRateWriteQueue.flush();
+                return exchangeRateDAO.upsertAll(batch.rates.values());
+            });
+            invalidateCached("/exchangeRates");
+            responseCache.invalidatePrefix("/exchangeRate/");
+        }
+
+        BulkImportResponse bulkImportResponse = new BulkImportResponse(
+                inserted,
+                batch.accepted - inserted,
+                batch.rejected,
+                batch.errors
+        );
+
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), bulkImportResponse);
+    }
+
+    private void readCsv(HttpServletRequest req, ImportBatch batch) throws IOException {
+        BufferedReader reader = req.getReader();
+        String line;
+        int lineNumber = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            if (lineNumber == 1 && line.toLowerCase().startsWith("base")) continue;
+
+            String[] columns = line.split(",");
+            if (columns.length != 3) {
+                batch.reject("Line " + lineNumber + ": expected base,target,rate");
+                continue;
+            }
+            batch.add("Line " + lineNumber, new ExchangeRateRequest(columns[0].trim(), columns[1].trim(), columns[2].trim()));
+        }
+    }
+
+    private void readJson(HttpServletRequest req, ImportBatch batch) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(req.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+                throw new WrongParametersException("Request body must be a JSON array of exchange rates!");
+
+            int item = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null)
+                    throw new WrongParametersException("Request body must be a JSON array of exchange rates!");
+
+                if (token == JsonToken.START_OBJECT) {
+                    batch.add("Item " + item, mapper.readValue(parser, ExchangeRateRequest.class));
+                } else {
+                    parser.skipChildren();
+                    batch.reject("Item " + item + ": expected an exchange rate object");
+                }
+                item++;
+            }
+        } catch (JsonProcessingException e) {
+            throw new WrongParametersException("Request body must be a JSON array of exchange rates!");
+        }
+    }
+
+    private static class ImportBatch {
+        private final RateSnapshot snapshot;
+        private final Map<String, ExchangeRate> rates = new LinkedHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+        private int accepted;
+        private int rejected;
+
+        private ImportBatch(RateSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        private void add(String position, ExchangeRateRequest request) {
+            String baseCode = request.getBaseCurrencyCode();
+            String targetCode = request.getTargetCurrencyCode();
+
+            if (baseCode == null || baseCode.length() != 3 || targetCode == null || targetCode.length() != 3) {
+                reject(position + ": wrong currency codes");
+                return;
+            }
+            baseCode = baseCode.toUpperCase();
+            targetCode = targetCode.toUpperCase();
+
+            BigDecimal rate = parseRate(request.getRate());
+            if (rate == null) {
+                reject(position + ": rate must be a positive number");
+                return;
+            }
+
+            Optional<Currency> baseCurrency = snapshot.findCurrencyByCode(baseCode);
+            Optional<Currency> targetCurrency = snapshot.findCurrencyByCode(targetCode);
+            if (baseCurrency.isEmpty() || targetCurrency.isEmpty()) {
+                reject(position + ": currency with code " + (baseCurrency.isEmpty() ? baseCode : targetCode) + " not found");
+                return;
+            }
+            if (baseCurrency.get().getId().equals(targetCurrency.get().getId())) {
+                reject(position + ": base and target currencies must differ");
+                return;
+            }
+
+            rates.put(baseCode + targetCode, new ExchangeRate(baseCurrency.get().getId(), targetCurrency.get().getId(), rate));
+            accepted = rates.size();
+        }
+
+        private void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(error);
+        }
+
+        private BigDecimal parseRate(String rate) {
+            if (rate == null) return null;
+            try {
+                BigDecimal value = new BigDecimal(rate.trim());
+                return value.signum() > 0 ? value : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.klokov.servlet.exchangeRate;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.cache.CachedResponse;
+import ru.klokov.cache.CapturingResponseWrapper;
+import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.CurrencyIndex;
+import ru.klokov.snapshot.RateMatrix;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.PackedDecimal;
+import ru.klokov.util.ResponseFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@WebServlet(value = "/exchangeRates/matrix", asyncSupported = true)
+public class ExchangeRatesMatrixServlet extends BaseServlet {
+    private RateSnapshotHolder rateSnapshotHolder;
+    private int maxCachedBytes;
+    private final Map<ResponseFormat, CachedResponse> serializedMatrices = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        maxCachedBytes = properties.getInt("exchange.matrix.cacheMaxBytes", 32 * 1024 * 1024);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        ResponseFormat format = responseFormat(req);
+        ObjectMapper formatMapper = responseMapper(req);
+        CachedResponse cached = serializedMatrices.get(format);
+
+        resp.setContentType(responseContentType(req));
+        if (!formatMapper.getFactory().canHandleBinaryNatively()) resp.setCharacterEncoding("UTF-8");
+        resp.setStatus(HttpServletResponse.SC_OK);
+
+        if (cached != null && cached.getVersion() == snapshot.getVersion()) {
+            writeCached(req, resp, cached);
+            return;
+        }
+
+        CapturingResponseWrapper capturingResponse = new CapturingResponseWrapper(resp, maxCachedBytes);
+        writeMatrix(snapshot, formatMapper, capturingResponse.getOutputStream());
+
+        if (capturingResponse.isCaptureComplete()) {
+            serializedMatrices.put(format, new CachedResponse(capturingResponse.getContentType(),
+                    capturingResponse.getCapturedBytes(), snapshot.getVersion(), 0));
+        }
+    }
+
+    private void writeMatrix(RateSnapshot snapshot, ObjectMapper formatMapper, OutputStream outputStream) throws IOException {
+        CurrencyIndex currencyIndex = snapshot.getCurrencyIndex();
+        RateMatrix rateMatrix = snapshot.getRateMatrix();
+
+        try (JsonGenerator generator = formatMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (int baseIndex = 0; baseIndex < currencyIndex.size(); baseIndex++) {
+                generator.writeObjectFieldStart(currencyIndex.get(baseIndex).getCode());
+                for (int targetIndex = 0; targetIndex < currencyIndex.size(); targetIndex++) {
+                    long packedRate = rateMatrix.getPackedRate(baseIndex, targetIndex);
+                    if (packedRate == PackedDecimal.ABSENT) continue;
+
+                    generator.writeFieldName(currencyIndex.get(targetIndex).getCode());
+                    generator.writeNumber(packedRate == PackedDecimal.OVERFLOW
+                            ? rateMatrix.get(baseIndex, targetIndex)
+                            : PackedDecimal.toBigDecimal(packedRate));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -5,8 +5,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ru.klokov.dao.CurrencyDAO;
-import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.dao.ExchangeRatePageQuery;
 import ru.klokov.dao.ICurrencyDAO;
 import ru.klokov.dao.IExchangeRateDAO;
 import ru.klokov.exception.ResourceAlreadyExistsException;
@@ -16,6 +15,12 @@ import ru.klokov.model.Currency;
 import ru.klokov.model.ExchangeRate;
 import ru.klokov.response.ExchangeRateResponse;
 import ru.klokov.servlet.BaseServlet;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.DecimalParameter;
+import ru.klokov.util.FieldProjection;
+import ru.klokov.util.PageParameter;
 import ru.klokov.util.ResponseHandler;
 
 import java.io.IOException;
@@ -24,56 +29,81 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-@WebServlet("/exchangeRates")
+@WebServlet(value = "/exchangeRates", asyncSupported = true)
 public class ExchangeRatesServlet extends BaseServlet {
+    private static final List<String> FIELDS = List.of("id", "baseCurrency", "targetCurrency", "rate",
+            "baseCurrency.id", "baseCurrency.code", "baseCurrency.fullName", "baseCurrency.sign",
+            "targetCurrency.id", "targetCurrency.code", "targetCurrency.fullName", "targetCurrency.sign");
+
     private ICurrencyDAO currencyDAO;
     private IExchangeRateDAO exchangeRateDAO;
+    private RateSnapshotHolder rateSnapshotHolder;
+    private int defaultPageLimit;
+    private int maxPageLimit;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        currencyDAO = (CurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
-        exchangeRateDAO = (ExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        currencyDAO = (ICurrencyDAO) config.getServletContext().getAttribute("currencyDAO");
+        exchangeRateDAO = (IExchangeRateDAO) config.getServletContext().getAttribute("exchangeRateDAO");
+        rateSnapshotHolder = (RateSnapshotHolder) config.getServletContext().getAttribute("rateSnapshotHolder");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        defaultPageLimit = properties.getInt("pagination.defaultLimit", 100);
+        maxPageLimit = properties.getInt("pagination.maxLimit", 1000);
     }
 
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        resp.setContentType("application/json");
-
-        List<ExchangeRate> exchangeRates = exchangeRateDAO.findAll();
-        List<ExchangeRateResponse> exchangeRateResponses = new ArrayList<>();
+    protected boolean isCacheableGet() {
+        return true;
+    }
 
-        for (ExchangeRate exchangeRate : exchangeRates) {
-            Optional<Currency> baseCurrency = currencyDAO.findById(exchangeRate.getBaseCurrencyId());
-            Optional<Currency> targetCurrency = currencyDAO.findById(exchangeRate.getTargetCurrencyId());
+    @Override
+    protected boolean hasCurrentRepresentation(HttpServletRequest req) {
+        String after = req.getParameter("after");
+        return after == null || after.length() == 6 && isKnownPair(after.toUpperCase());
+    }
 
-            if (baseCurrency.isEmpty())
-                throw new ResourceNotFoundException("Currency with id " + exchangeRate.getBaseCurrencyId() + " not found!");
-            if (targetCurrency.isEmpty())
-                throw new ResourceNotFoundException("Currency with id " + exchangeRate.getTargetCurrencyId() + " not found!");
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(responseContentType(req));
+        FieldProjection projection = FieldProjection.parse(req.getParameter("fields"), FIELDS);
 
-            ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
-                    exchangeRate.getId(),
-                    baseCurrency.get(),
-                    targetCurrency.get(),
-                    exchangeRate.getRate()
-            );
+        if (!PageParameter.isRequested(req, "limit", "after", "base", "target")) {
+            ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req),
+                    projection.apply(mapper, exchangeRateDAO::findAllWithCurrencies));
+            return;
+        }
 
-            exchangeRateResponses.add(exchangeRateResponse);
+        String base = PageParameter.parseCode("base", req.getParameter("base"), 3);
+        String target = PageParameter.parseCode("target", req.getParameter("target"), 3);
+        String after = PageParameter.parseCode("after", req.getParameter("after"), 6);
+        if (after != null && !isKnownPair(after))
+            throw new WrongParametersException("Wrong after parameter! Use the Link header of the previous page.");
+        int limit = PageParameter.parseLimit(req.getParameter("limit"), defaultPageLimit, maxPageLimit);
+
+        List<ExchangeRateResponse> exchangeRates = new ArrayList<>(limit);
+        exchangeRateDAO.findPageWithCurrencies(new ExchangeRatePageQuery(base, target,
+                after == null ? null : after.substring(0, 3),
+                after == null ? null : after.substring(3), limit), exchangeRates::add);
+
+        if (exchangeRates.size() == limit) {
+            ExchangeRateResponse last = exchangeRates.get(limit - 1);
+            resp.setHeader("Link", PageParameter.nextLink(req, last.getBaseCurrency().getCode() + last.getTargetCurrency().getCode()));
         }
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(exchangeRateResponses));
+        ResponseHandler.sendJsonArray(resp, HttpServletResponse.SC_OK, responseMapper(req), projection.apply(mapper, exchangeRates::forEach));
     }
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String baseCurrencyCode = req.getParameter("baseCurrencyCode");
         String targetCurrencyCode = req.getParameter("targetCurrencyCode");
-        String rate = req.getParameter("rate");
+        String rateParam = req.getParameter("rate");
+        BigDecimal rate = DecimalParameter.parseRate(rateParam);
 
-        resp.setContentType("application/json");
+        resp.setContentType(responseContentType(req));
 
-        if (exchangeRateParamsNotValid(baseCurrencyCode, targetCurrencyCode, rate))
+        if (exchangeRateParamsNotValid(baseCurrencyCode, targetCurrencyCode, rateParam, rate))
             throw new WrongParametersException("Wrong currency codes or rate parameters!");
 
         Optional<Currency> baseCurrency = currencyDAO.findByCode(baseCurrencyCode);
@@ -89,11 +119,12 @@ public class ExchangeRatesServlet extends BaseServlet {
         if (exchangeRate.isPresent())
             throw new ResourceAlreadyExistsException("Currency pair with code " + baseCurrencyCode + "-" + targetCurrencyCode + " already exists!");
 
-        ExchangeRate createdExchangeRate = exchangeRateDAO.save(new ExchangeRate(
+        ExchangeRate createdExchangeRate = rateSnapshotHolder.saveExchangeRate(() -> exchangeRateDAO.save(new ExchangeRate(
                 baseCurrency.get().getId(),
                 targetCurrency.get().getId(),
-                BigDecimal.valueOf(Double.parseDouble(rate))
-        ));
+                rate
+        )));
+        invalidateCached("/exchangeRates", "/exchangeRate/" + (baseCurrencyCode + targetCurrencyCode).toUpperCase());
 
         ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
                 createdExchangeRate.getId(),
@@ -102,22 +133,20 @@ public class ExchangeRatesServlet extends BaseServlet {
                 createdExchangeRate.getRate()
         );
 
-        ResponseHandler.sendResponse(resp, HttpServletResponse.SC_OK, mapper.writeValueAsString(exchangeRateResponse));
+        ResponseHandler.sendJson(resp, HttpServletResponse.SC_OK, responseMapper(req), exchangeRateResponse);
     }
 
-    private boolean exchangeRateParamsNotValid(String baseCurrencyCode, String targetCurrencyCode, String rate) {
+    private boolean exchangeRateParamsNotValid(String baseCurrencyCode, String targetCurrencyCode, String rateParam,
+                                               BigDecimal rate) {
         return (baseCurrencyCode.isBlank() || baseCurrencyCode.length() != 3 ||
             targetCurrencyCode.isBlank() || targetCurrencyCode.length() != 3 ||
-            rate.isBlank() || !rateParameterIsDouble(rate));
+            rateParam.isBlank() || rate == null);
     }
 
-    private boolean rateParameterIsDouble(String rate) {
-        try {
-            Double.parseDouble(rate);
-        }
-        catch (NumberFormatException e) {
-            return false;
-        }
-        return true;
+    // Pages are ordered by currency id, so a cursor is only meaningful when both of its codes resolve to a currency.
+    private boolean isKnownPair(String codes) {
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        return snapshot.findCurrencyByCode(codes.substring(0, 3)).isPresent()
+                && snapshot.findCurrencyByCode(codes.substring(3)).isPresent();
     }
 }
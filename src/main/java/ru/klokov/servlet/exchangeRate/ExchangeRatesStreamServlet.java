@@ -0,0 +1,75 @@
+package ru.klokov.servlet.exchangeRate;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.klokov.response.ErrorResponse;
+import ru.klokov.servlet.BaseServlet;
+import ru.klokov.stream.RateStreamHub;
+import ru.klokov.util.ApplicationProperties;
+import ru.klokov.util.ResponseHandler;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+@WebServlet(value = "/exchangeRates/stream", asyncSupported = true)
+public class ExchangeRatesStreamServlet extends BaseServlet {
+    private RateStreamHub rateStreamHub;
+    private int maxPairsPerSubscriber;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        rateStreamHub = (RateStreamHub) config.getServletContext().getAttribute("rateStreamHub");
+        ApplicationProperties properties = (ApplicationProperties) config.getServletContext().getAttribute("properties");
+        maxPairsPerSubscriber = properties.getInt("stream.maxPairsPerSubscriber", 256);
+    }
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!req.getMethod().equals("GET")) {
+            super.service(req, resp);
+            return;
+        }
+
+        Set<String> pairs = new HashSet<>();
+        String pairsParam = req.getParameter("pairs");
+        if (pairsParam != null && !pairsParam.isBlank()) {
+            for (String pair : pairsParam.split(",")) {
+                String code = pair.trim().toUpperCase();
+                if (!code.matches("[A-Z]{6}")) {
+                    sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "Wrong currency pair " + pair.trim() + "!");
+                    return;
+                }
+                pairs.add(code);
+            }
+        }
+        if (pairs.size() > maxPairsPerSubscriber) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "Too many currency pairs, maximum is " + maxPairsPerSubscriber + "!");
+            return;
+        }
+        if (rateStreamHub.isFull()) {
+            sendError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many rate stream subscribers!");
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0);
+        rateStreamHub.subscribe(asyncContext, pairs);
+    }
+
+    private void sendError(HttpServletResponse resp, int code, String message) throws IOException {
+        resp.setContentType("application/json");
+        ResponseHandler.sendJson(resp, code, mapper, new ErrorResponse(message));
+    }
+}
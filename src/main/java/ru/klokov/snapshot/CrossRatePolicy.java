@@ -0,0 +1,27 @@
+package ru.klokov.snapshot;
+
+import java.util.List;
+
+public class CrossRatePolicy {
+    private final int maxHops;
+    private final List<String> preferredPivots;
+    private final int denseMatrixLimit;
+
+    public CrossRatePolicy(int maxHops, List<String> preferredPivots, int denseMatrixLimit) {
+        this.maxHops = maxHops;
+        this.preferredPivots = List.copyOf(preferredPivots);
+        this.denseMatrixLimit = denseMatrixLimit;
+    }
+
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public List<String> getPreferredPivots() {
+        return preferredPivots;
+    }
+
+    public int getDenseMatrixLimit() {
+        return denseMatrixLimit;
+    }
+}
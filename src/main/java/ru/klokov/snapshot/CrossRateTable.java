@@ -0,0 +1,313 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.util.PackedDecimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+final class CrossRateTable {
+    private static final int SCALE = 4;
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final BigDecimal IDENTITY_RATE = BigDecimal.ONE.setScale(SCALE, RoundingMode.HALF_EVEN);
+    private static final long PACKED_IDENTITY_RATE = PackedDecimal.pack(IDENTITY_RATE);
+    private static final long PACKED_ONE = PackedDecimal.pack(1, 0);
+
+    private CrossRateTable() {
+    }
+
+    static Graph graph(CurrencyIndex currencyIndex, Collection<ExchangeRate> exchangeRates, CrossRatePolicy policy) {
+        PivotOrder pivotOrder = PivotOrder.of(currencyIndex, policy.getPreferredPivots());
+        return new Graph(buildAdjacency(currencyIndex, exchangeRates, pivotOrder), pivotOrder, policy);
+    }
+
+    static RateMatrix build(Graph graph) {
+        int size = graph.adjacency.length;
+        RateMatrix rateMatrix = RateMatrix.allocate(size, graph.denseMatrixLimit);
+
+        // Rows are independent, so they are resolved on the common fork/join pool and only the copy is serialized.
+        IntStream sources = IntStream.range(0, size);
+        if (size >= PARALLEL_THRESHOLD) sources = sources.parallel();
+        sources.forEach(source -> {
+            ResolvedRow row = new ResolvedRow(size);
+            resolveFrom(source, graph.adjacency, graph.maxHops, graph.pivotOrder, row);
+            synchronized (rateMatrix) {
+                row.copyTo(source, rateMatrix);
+            }
+        });
+
+        return rateMatrix;
+    }
+
+    static BigDecimal resolve(Graph graph, int baseIndex, int targetIndex) {
+        return resolveRate(graph, baseIndex, targetIndex).rate();
+    }
+
+    private static ResolvedRate resolveRate(Graph graph, int baseIndex, int targetIndex) {
+        ResolvedRate resolvedRate = new ResolvedRate(targetIndex);
+        resolveFrom(baseIndex, graph.adjacency, graph.maxHops, graph.pivotOrder, resolvedRate);
+        return resolvedRate;
+    }
+
+    private static void resolveFrom(int source, Edge[][] adjacency, int maxHops, PivotOrder pivotOrder,
+                                    RateSink rateSink) {
+        rateSink.put(source, source, PACKED_IDENTITY_RATE, IDENTITY_RATE);
+
+        Paths paths = new Paths(adjacency.length, source);
+        int[] level = new int[adjacency.length];
+        int[] nextLevel = new int[adjacency.length];
+        level[0] = source;
+        int levelSize = 1;
+        for (int hops = 1; hops <= maxHops && levelSize > 0; hops++) {
+            int nextLevelSize = 0;
+
+            for (int i = 0; i < levelSize; i++) {
+                int node = level[i];
+                for (Edge edge : adjacency[node]) {
+                    if (paths.isReached(edge.to)) continue;
+
+                    paths.extend(node, edge);
+                    nextLevel[nextLevelSize++] = edge.to;
+
+                    if (hops == 1 && edge.forward) {
+                        rateSink.put(source, edge.to, edge.packedRate, edge.rate);
+                        continue;
+                    }
+
+                    long packedRate = paths.packedRate(edge.to);
+                    if (packedRate != PackedDecimal.OVERFLOW) {
+                        rateSink.put(source, edge.to, packedRate, null);
+                        continue;
+                    }
+
+                    BigDecimal rate = paths.rate(edge.to);
+                    rateSink.put(source, edge.to, PackedDecimal.pack(rate), rate);
+                }
+            }
+
+            pivotOrder.sort(nextLevel, nextLevelSize);
+            int[] resolvedLevel = level;
+            level = nextLevel;
+            nextLevel = resolvedLevel;
+            levelSize = nextLevelSize;
+        }
+    }
+
+    private static Edge[][] buildAdjacency(CurrencyIndex currencyIndex, Collection<ExchangeRate> exchangeRates,
+                                           PivotOrder pivotOrder) {
+        int size = currencyIndex.size();
+        List<Map<Integer, Edge>> edges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            edges.add(new TreeMap<>(pivotOrder.comparator()));
+        }
+
+        for (ExchangeRate exchangeRate : exchangeRates) {
+            int base = currencyIndex.indexOfId(exchangeRate.getBaseCurrencyId());
+            int target = currencyIndex.indexOfId(exchangeRate.getTargetCurrencyId());
+            if (base == CurrencyIndex.NOT_FOUND || target == CurrencyIndex.NOT_FOUND || base == target) continue;
+            if (exchangeRate.getRate() == null || exchangeRate.getRate().signum() == 0) continue;
+
+            edges.get(base).put(target, new Edge(target, exchangeRate.getRate(), true));
+            edges.get(target).merge(base, new Edge(base, exchangeRate.getRate(), false),
+                    (existing, reverse) -> existing.forward ? existing : reverse);
+        }
+
+        Edge[][] adjacency = new Edge[size][];
+        for (int i = 0; i < size; i++) {
+            adjacency[i] = edges.get(i).values().toArray(new Edge[0]);
+        }
+        return adjacency;
+    }
+
+    static final class Graph {
+        private final Edge[][] adjacency;
+        private final PivotOrder pivotOrder;
+        private final int maxHops;
+        private final int denseMatrixLimit;
+
+        private Graph(Edge[][] adjacency, PivotOrder pivotOrder, CrossRatePolicy policy) {
+            this.adjacency = adjacency;
+            this.pivotOrder = pivotOrder;
+            this.maxHops = policy.getMaxHops();
+            this.denseMatrixLimit = policy.getDenseMatrixLimit();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RateSink {
+        void put(int baseIndex, int targetIndex, long packedRate, BigDecimal rate);
+    }
+
+    private static final class Edge {
+        private final int to;
+        private final BigDecimal rate;
+        private final long packedRate;
+        private final boolean forward;
+
+        private Edge(int to, BigDecimal rate, boolean forward) {
+            this.to = to;
+            this.rate = rate;
+            this.packedRate = PackedDecimal.pack(rate);
+            this.forward = forward;
+        }
+    }
+
+    private static final class PivotOrder {
+        private final int[] positions;
+        private final int[] indices;
+
+        private PivotOrder(int[] positions, int[] indices) {
+            this.positions = positions;
+            this.indices = indices;
+        }
+
+        private static PivotOrder of(CurrencyIndex currencyIndex, List<String> preferredPivots) {
+            int size = currencyIndex.size();
+            int[] ranks = new int[size];
+            for (int i = 0; i < size; i++) {
+                int rank = preferredPivots.indexOf(currencyIndex.get(i).getCode());
+                ranks[i] = rank < 0 ? preferredPivots.size() : rank;
+            }
+
+            int[] indices = IntStream.range(0, size).boxed()
+                    .sorted(Comparator.<Integer>comparingInt(index -> ranks[index]).thenComparingInt(index -> index))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            int[] positions = new int[size];
+            for (int position = 0; position < size; position++) {
+                positions[indices[position]] = position;
+            }
+            return new PivotOrder(positions, indices);
+        }
+
+        private Comparator<Integer> comparator() {
+            return Comparator.comparingInt(index -> positions[index]);
+        }
+
+        private void sort(int[] nodes, int count) {
+            for (int i = 0; i < count; i++) {
+                nodes[i] = positions[nodes[i]];
+            }
+            Arrays.sort(nodes, 0, count);
+            for (int i = 0; i < count; i++) {
+                nodes[i] = indices[nodes[i]];
+            }
+        }
+    }
+
+    private static final class Paths {
+        private final long[] numerators;
+        private final long[] denominators;
+        private BigDecimal[] exactNumerators;
+        private BigDecimal[] exactDenominators;
+
+        private Paths(int size, int source) {
+            numerators = new long[size];
+            denominators = new long[size];
+            Arrays.fill(numerators, PackedDecimal.ABSENT);
+            numerators[source] = PACKED_ONE;
+            denominators[source] = PACKED_ONE;
+        }
+
+        private boolean isReached(int node) {
+            return numerators[node] != PackedDecimal.ABSENT;
+        }
+
+        private void extend(int node, Edge edge) {
+            int to = edge.to;
+            numerators[to] = edge.forward ? multiply(numerators[node], edge.packedRate) : numerators[node];
+            denominators[to] = edge.forward ? denominators[node] : multiply(denominators[node], edge.packedRate);
+
+            if (numerators[to] == PackedDecimal.OVERFLOW) {
+                if (exactNumerators == null) exactNumerators = new BigDecimal[numerators.length];
+                exactNumerators[to] = edge.forward ? numerator(node).multiply(edge.rate) : numerator(node);
+            }
+            if (denominators[to] == PackedDecimal.OVERFLOW) {
+                if (exactDenominators == null) exactDenominators = new BigDecimal[denominators.length];
+                exactDenominators[to] = edge.forward ? denominator(node) : denominator(node).multiply(edge.rate);
+            }
+        }
+
+        private long packedRate(int node) {
+            if (numerators[node] == PackedDecimal.OVERFLOW || denominators[node] == PackedDecimal.OVERFLOW)
+                return PackedDecimal.OVERFLOW;
+
+            long rate = PackedDecimal.divide(numerators[node], denominators[node], SCALE);
+            return rate == PackedDecimal.OVERFLOW ? PackedDecimal.OVERFLOW : PackedDecimal.pack(rate, SCALE);
+        }
+
+        private BigDecimal rate(int node) {
+            return numerator(node).divide(denominator(node), SCALE, RoundingMode.HALF_EVEN);
+        }
+
+        private BigDecimal numerator(int node) {
+            return numerators[node] == PackedDecimal.OVERFLOW ? exactNumerators[node] : PackedDecimal.toBigDecimal(numerators[node]);
+        }
+
+        private BigDecimal denominator(int node) {
+            return denominators[node] == PackedDecimal.OVERFLOW ? exactDenominators[node] : PackedDecimal.toBigDecimal(denominators[node]);
+        }
+
+        private static long multiply(long packed, long packedRate) {
+            if (packed == PackedDecimal.OVERFLOW || packedRate == PackedDecimal.OVERFLOW) return PackedDecimal.OVERFLOW;
+            return PackedDecimal.multiplyExact(packed, packedRate);
+        }
+    }
+
+    private static final class ResolvedRow implements RateSink {
+        private final long[] packedRates;
+        private BigDecimal[] overflowRates;
+
+        private ResolvedRow(int size) {
+            packedRates = new long[size];
+            Arrays.fill(packedRates, PackedDecimal.ABSENT);
+        }
+
+        @Override
+        public void put(int baseIndex, int targetIndex, long packedRate, BigDecimal rate) {
+            packedRates[targetIndex] = packedRate;
+            if (packedRate == PackedDecimal.OVERFLOW) {
+                if (overflowRates == null) overflowRates = new BigDecimal[packedRates.length];
+                overflowRates[targetIndex] = rate;
+            }
+        }
+
+        private void copyTo(int baseIndex, RateMatrix rateMatrix) {
+            for (int targetIndex = 0; targetIndex < packedRates.length; targetIndex++) {
+                if (packedRates[targetIndex] == PackedDecimal.ABSENT) continue;
+                rateMatrix.put(baseIndex, targetIndex, packedRates[targetIndex],
+                        overflowRates == null ? null : overflowRates[targetIndex]);
+            }
+        }
+    }
+
+    private static final class ResolvedRate implements RateSink {
+        private final int targetIndex;
+        private long packedRate = PackedDecimal.ABSENT;
+        private BigDecimal rate;
+
+        private ResolvedRate(int targetIndex) {
+            this.targetIndex = targetIndex;
+        }
+
+        @Override
+        public void put(int baseIndex, int targetIndex, long packedRate, BigDecimal rate) {
+            if (targetIndex != this.targetIndex) return;
+            this.packedRate = packedRate;
+            this.rate = rate;
+        }
+
+        private BigDecimal rate() {
+            if (packedRate == PackedDecimal.ABSENT) return null;
+            return packedRate == PackedDecimal.OVERFLOW ? rate : PackedDecimal.toBigDecimal(packedRate);
+        }
+    }
+}
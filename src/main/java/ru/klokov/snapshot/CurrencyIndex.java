@@ -0,0 +1,93 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.model.Currency;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class CurrencyIndex {
+    public static final int NOT_FOUND = -1;
+
+    private final Currency[] currencies;
+    private final LongIntHashMap indexByCodeKey;
+    private final Map<String, Integer> indexByUnpackableCode;
+    private final LongIntHashMap indexById;
+
+    private CurrencyIndex(Currency[] currencies) {
+        this.currencies = currencies;
+        this.indexByCodeKey = new LongIntHashMap(currencies.length);
+        this.indexByUnpackableCode = new HashMap<>();
+        this.indexById = new LongIntHashMap(currencies.length);
+
+        for (int i = 0; i < currencies.length; i++) {
+            int codeKey = packCode(currencies[i].getCode());
+            if (codeKey == NOT_FOUND) indexByUnpackableCode.put(currencies[i].getCode(), i);
+            else indexByCodeKey.put(codeKey, i);
+            indexById.put(currencies[i].getId(), i);
+        }
+    }
+
+    public static CurrencyIndex of(Collection<Currency> currencies) {
+        Currency[] sorted = currencies.toArray(new Currency[0]);
+        Arrays.sort(sorted, Comparator.comparing(Currency::getId));
+        return new CurrencyIndex(sorted);
+    }
+
+    public CurrencyIndex with(Currency currency) {
+        int existing = indexOfId(currency.getId());
+        Currency[] updated;
+        if (existing == NOT_FOUND) {
+            updated = Arrays.copyOf(currencies, currencies.length + 1);
+            updated[currencies.length] = currency;
+        } else {
+            updated = currencies.clone();
+            updated[existing] = currency;
+        }
+        return new CurrencyIndex(updated);
+    }
+
+    public static int packCode(String code) {
+        if (code == null || code.length() != 3) return NOT_FOUND;
+
+        int key = 1;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c > 0xFF) return NOT_FOUND;
+            key = (key << 8) | c;
+        }
+        return key;
+    }
+
+    public int size() {
+        return currencies.length;
+    }
+
+    public int indexOfCode(String code) {
+        int codeKey = packCode(code);
+        if (codeKey != NOT_FOUND) return indexByCodeKey.get(codeKey);
+
+        Integer index = indexByUnpackableCode.get(code);
+        return index == null ? NOT_FOUND : index;
+    }
+
+    public int indexOfId(long id) {
+        return indexById.get(id);
+    }
+
+    public Currency get(int index) {
+        return currencies[index];
+    }
+
+    public List<Currency> asList() {
+        return Collections.unmodifiableList(Arrays.asList(currencies));
+    }
+
+    long footprintBytes() {
+        return 16L + 4L * currencies.length + indexByCodeKey.footprintBytes() + indexById.footprintBytes();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.klokov.snapshot;
+
+import java.util.Arrays;
+
+final class DenseRateMatrix extends RateMatrix {
+    private final long[] cells;
+    private int pairCount;
+
+    DenseRateMatrix(int size) {
+        super(size);
+        cells = new long[size * size];
+        Arrays.fill(cells, ABSENT);
+    }
+
+    @Override
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    @Override
+    long getPacked(int baseIndex, int targetIndex) {
+        return cells[(int) cell(baseIndex, targetIndex)];
+    }
+
+    @Override
+    void putPacked(int baseIndex, int targetIndex, long packed) {
+        int cell = (int) cell(baseIndex, targetIndex);
+        if (cells[cell] == ABSENT) pairCount++;
+        cells[cell] = packed;
+    }
+
+    @Override
+    long footprintBytes() {
+        return 16L + 8L * cells.length;
+    }
+}
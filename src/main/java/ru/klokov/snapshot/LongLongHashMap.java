@@ -0,0 +1,69 @@
+package ru.klokov.snapshot;
+
+final class LongLongHashMap {
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    LongLongHashMap(int expectedSize, long missingValue) {
+        int capacity = LongIntHashMap.tableSizeFor(expectedSize);
+        this.missingValue = missingValue;
+        this.zeroValue = missingValue;
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    long get(long key) {
+        if (key == 0) return hasZeroKey ? zeroValue : missingValue;
+
+        int mask = keys.length - 1;
+        int slot = LongIntHashMap.mix(key) & mask;
+        while (true) {
+            long current = keys[slot];
+            if (current == key) return values[slot];
+            if (current == 0) return missingValue;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZeroKey) size++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) resize();
+
+        int mask = keys.length - 1;
+        int slot = LongIntHashMap.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) size++;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long footprintBytes() {
+        return 16L + 8L * keys.length + 8L * values.length;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        size = hasZeroKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
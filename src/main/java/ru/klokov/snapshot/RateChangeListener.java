@@ -0,0 +1,9 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+
+@FunctionalInterface
+public interface RateChangeListener {
+    void rateChanged(Currency baseCurrency, Currency targetCurrency, ExchangeRate exchangeRate);
+}
@@ -0,0 +1,70 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.util.PackedDecimal;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+public abstract class RateMatrix {
+    static final long ABSENT = PackedDecimal.ABSENT;
+    static final long OVERFLOW = PackedDecimal.OVERFLOW;
+
+    private final int size;
+    private final Map<Long, BigDecimal> overflow = new HashMap<>();
+
+    RateMatrix(int size) {
+        this.size = size;
+    }
+
+    static RateMatrix allocate(int size, int denseLimit) {
+        return size <= denseLimit ? new DenseRateMatrix(size) : new SparseRateMatrix(size);
+    }
+
+    public BigDecimal get(int baseIndex, int targetIndex) {
+        long packed = getPacked(baseIndex, targetIndex);
+        if (packed == ABSENT) return null;
+        if (packed == OVERFLOW) return overflow.get(cell(baseIndex, targetIndex));
+        return PackedDecimal.toBigDecimal(packed);
+    }
+
+    public long getPackedRate(int baseIndex, int targetIndex) {
+        return getPacked(baseIndex, targetIndex);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public abstract int getPairCount();
+
+    public long getFootprintBytes() {
+        return footprintBytes() + overflow.size() * 96L;
+    }
+
+    public double getBytesPerPair() {
+        int pairCount = getPairCount();
+        return pairCount == 0 ? 0 : (double) getFootprintBytes() / pairCount;
+    }
+
+    public String getMemoryReport() {
+        return getClass().getSimpleName() + " currencies=" + size + " pairs=" + getPairCount() +
+                " overflow=" + overflow.size() + " bytes=" + getFootprintBytes() +
+                " bytesPerPair=" + String.format("%.2f", getBytesPerPair());
+    }
+
+    void put(int baseIndex, int targetIndex, long packed, BigDecimal rate) {
+        if (packed == OVERFLOW) overflow.put(cell(baseIndex, targetIndex), rate);
+        putPacked(baseIndex, targetIndex, packed);
+    }
+
+    abstract long getPacked(int baseIndex, int targetIndex);
+
+    abstract void putPacked(int baseIndex, int targetIndex, long packed);
+
+    abstract long footprintBytes();
+
+    long cell(int baseIndex, int targetIndex) {
+        return (long) baseIndex * size + targetIndex;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.util.PackedDecimal;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public final class RateSnapshot {
+    private final long version;
+    private final CurrencyIndex currencyIndex;
+    private final Map<Long, ExchangeRate> ratesByPair;
+    private final CrossRatePolicy crossRatePolicy;
+    private final Object rateMatrixLock = new Object();
+    private volatile RateMatrix rateMatrix;
+
+    private RateSnapshot(long version, CurrencyIndex currencyIndex, Map<Long, ExchangeRate> ratesByPair,
+                         CrossRatePolicy crossRatePolicy) {
+        this.version = version;
+        this.currencyIndex = currencyIndex;
+        this.ratesByPair = ratesByPair;
+        this.crossRatePolicy = crossRatePolicy;
+    }
+
+    public static RateSnapshot of(long version, List<Currency> currencies, List<ExchangeRate> exchangeRates,
+                                  CrossRatePolicy crossRatePolicy) {
+        Map<Long, ExchangeRate> byPair = new HashMap<>();
+        for (ExchangeRate exchangeRate : exchangeRates) {
+            byPair.put(pairKey(exchangeRate.getBaseCurrencyId(), exchangeRate.getTargetCurrencyId()), copyOf(exchangeRate));
+        }
+
+        return new RateSnapshot(version, CurrencyIndex.of(currencies), byPair, crossRatePolicy);
+    }
+
+    public RateSnapshot withCurrency(long newVersion, Currency currency) {
+        return new RateSnapshot(newVersion, currencyIndex.with(currency), ratesByPair, crossRatePolicy);
+    }
+
+    public RateSnapshot withExchangeRate(long newVersion, ExchangeRate exchangeRate) {
+        Map<Long, ExchangeRate> byPair = new HashMap<>(ratesByPair);
+        byPair.put(pairKey(exchangeRate.getBaseCurrencyId(), exchangeRate.getTargetCurrencyId()), copyOf(exchangeRate));
+
+        return new RateSnapshot(newVersion, currencyIndex, byPair, crossRatePolicy);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Optional<Currency> findCurrencyByCode(String code) {
+        int index = currencyIndex.indexOfCode(code);
+        return index == CurrencyIndex.NOT_FOUND ? Optional.empty() : Optional.of(currencyIndex.get(index));
+    }
+
+    public Optional<Currency> findCurrencyById(Long id) {
+        int index = currencyIndex.indexOfId(id);
+        return index == CurrencyIndex.NOT_FOUND ? Optional.empty() : Optional.of(currencyIndex.get(index));
+    }
+
+    public Optional<ExchangeRate> findExchangeRate(Currency baseCurrency, Currency targetCurrency) {
+        return Optional.ofNullable(ratesByPair.get(pairKey(baseCurrency.getId(), targetCurrency.getId())));
+    }
+
+    public Optional<ExchangeRate> findExchangeRate(long baseCurrencyId, long targetCurrencyId) {
+        return Optional.ofNullable(ratesByPair.get(pairKey(baseCurrencyId, targetCurrencyId)));
+    }
+
+    public boolean hasExchangeRate(Currency baseCurrency, Currency targetCurrency) {
+        return ratesByPair.containsKey(pairKey(baseCurrency.getId(), targetCurrency.getId()));
+    }
+
+    public Optional<BigDecimal> findRate(Currency baseCurrency, Currency targetCurrency) {
+        int baseIndex = currencyIndex.indexOfId(baseCurrency.getId());
+        int targetIndex = currencyIndex.indexOfId(targetCurrency.getId());
+        if (baseIndex == CurrencyIndex.NOT_FOUND || targetIndex == CurrencyIndex.NOT_FOUND) return Optional.empty();
+
+        return Optional.ofNullable(getRateMatrix().get(baseIndex, targetIndex));
+    }
+
+    public long findPackedRate(Currency baseCurrency, Currency targetCurrency) {
+        int baseIndex = currencyIndex.indexOfId(baseCurrency.getId());
+        int targetIndex = currencyIndex.indexOfId(targetCurrency.getId());
+        if (baseIndex == CurrencyIndex.NOT_FOUND || targetIndex == CurrencyIndex.NOT_FOUND) return PackedDecimal.ABSENT;
+
+        return getRateMatrix().getPackedRate(baseIndex, targetIndex);
+    }
+
+    public Optional<BigDecimal> resolveRate(Currency baseCurrency, Currency targetCurrency,
+                                            Collection<ExchangeRate> exchangeRates) {
+        int baseIndex = currencyIndex.indexOfId(baseCurrency.getId());
+        int targetIndex = currencyIndex.indexOfId(targetCurrency.getId());
+        if (baseIndex == CurrencyIndex.NOT_FOUND || targetIndex == CurrencyIndex.NOT_FOUND) return Optional.empty();
+
+        CrossRateTable.Graph ratesAsOf = CrossRateTable.graph(currencyIndex, exchangeRates, crossRatePolicy);
+        return Optional.ofNullable(CrossRateTable.resolve(ratesAsOf, baseIndex, targetIndex));
+    }
+
+    public Collection<Currency> getCurrencies() {
+        return currencyIndex.asList();
+    }
+
+    public Collection<ExchangeRate> getExchangeRates() {
+        return Collections.unmodifiableCollection(ratesByPair.values());
+    }
+
+    public CurrencyIndex getCurrencyIndex() {
+        return currencyIndex;
+    }
+
+    public RateMatrix getRateMatrix() {
+        RateMatrix built = rateMatrix;
+        if (built != null) return built;
+
+        synchronized (rateMatrixLock) {
+            if (rateMatrix == null)
+                rateMatrix = CrossRateTable.build(CrossRateTable.graph(currencyIndex, ratesByPair.values(), crossRatePolicy));
+            return rateMatrix;
+        }
+    }
+
+    public String getMemoryReport() {
+        return getRateMatrix().getMemoryReport() + " indexBytes=" + currencyIndex.footprintBytes();
+    }
+
+    static long pairKey(long baseCurrencyId, long targetCurrencyId) {
+        return (baseCurrencyId << 32) | (targetCurrencyId & 0xFFFFFFFFL);
+    }
+
+    private static ExchangeRate copyOf(ExchangeRate exchangeRate) {
+        return new ExchangeRate(
+                exchangeRate.getId(),
+                exchangeRate.getBaseCurrencyId(),
+                exchangeRate.getTargetCurrencyId(),
+                exchangeRate.getRate()
+        );
+    }
+}
@@ -0,0 +1,199 @@
+package ru.klokov.snapshot;
+
+import ru.klokov.dao.DataVersion;
+import ru.klokov.dao.ICurrencyDAO;
+import ru.klokov.dao.IExchangeRateDAO;
+import ru.klokov.exception.DatabaseException;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+public class RateSnapshotHolder {
+    private static final Logger LOGGER = Logger.getLogger(RateSnapshotHolder.class.getName());
+
+    private final ICurrencyDAO currencyDAO;
+    private final IExchangeRateDAO exchangeRateDAO;
+    private final CrossRatePolicy crossRatePolicy;
+    private final DataVersion dataVersion;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<RateChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object swapLock = new Object();
+    private final List<ExchangeRate> unpublished = new ArrayList<>();
+    private RateSnapshot latest;
+    private volatile RateSnapshot snapshot;
+
+    public RateSnapshotHolder(ICurrencyDAO currencyDAO, IExchangeRateDAO exchangeRateDAO, CrossRatePolicy crossRatePolicy,
+                              DataVersion dataVersion) {
+        this.currencyDAO = currencyDAO;
+        this.exchangeRateDAO = exchangeRateDAO;
+        this.crossRatePolicy = crossRatePolicy;
+        this.dataVersion = dataVersion;
+    }
+
+    public RateSnapshot get() {
+        RateSnapshot current = snapshot;
+        if (current == null) {
+            reload();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    public void addRateChangeListener(RateChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void reload() throws DatabaseException {
+        writeLock.lock();
+        try {
+            RateSnapshot previous = snapshot;
+            long version = latest == null ? 1 : latest.getVersion() + 1;
+            RateSnapshot reloaded = RateSnapshot.of(version, currencyDAO.findAll(), exchangeRateDAO.findAll(), crossRatePolicy);
+            reloaded.getRateMatrix();
+            LOGGER.info("Rate snapshot " + version + " loaded: " + reloaded.getMemoryReport());
+            latest = reloaded;
+            snapshot = reloaded;
+            unpublished.clear();
+            dataVersion.bump();
+
+            if (previous != null && !listeners.isEmpty()) {
+                for (ExchangeRate exchangeRate : reloaded.getExchangeRates()) {
+                    Optional<ExchangeRate> previousRate = previous.findExchangeRate(exchangeRate.getBaseCurrencyId(),
+                            exchangeRate.getTargetCurrencyId());
+                    if (previousRate.isEmpty() || previousRate.get().getRate().compareTo(exchangeRate.getRate()) != 0)
+                        publish(reloaded, exchangeRate);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Currency saveCurrency(Supplier<Currency> write) throws DatabaseException {
+        Currency currency;
+        long version;
+
+        writeLock.lock();
+        try {
+            currency = write.get();
+            version = currencySaved(currency);
+        } finally {
+            writeLock.unlock();
+        }
+
+        swapIn(version);
+        return currency;
+    }
+
+    public ExchangeRate saveExchangeRate(Supplier<ExchangeRate> write) throws DatabaseException {
+        ExchangeRate exchangeRate;
+        long version;
+
+        writeLock.lock();
+        try {
+            exchangeRate = write.get();
+            version = exchangeRateSaved(exchangeRate);
+        } finally {
+            writeLock.unlock();
+        }
+
+        swapIn(version);
+        return exchangeRate;
+    }
+
+    public <T> T saveExchangeRate(ExchangeRate exchangeRate, Supplier<T> write) throws DatabaseException {
+        T result;
+        long version;
+
+        writeLock.lock();
+        try {
+            result = write.get();
+            version = exchangeRateSaved(exchangeRate);
+        } finally {
+            writeLock.unlock();
+        }
+
+        swapIn(version);
+        return result;
+    }
+
+    public <T> T saveExchangeRates(Supplier<T> write) throws DatabaseException {
+        writeLock.lock();
+        try {
+            T result = write.get();
+            reload();
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private long currencySaved(Currency currency) {
+        if (latest == null) reload();
+        latest = latest.withCurrency(latest.getVersion() + 1, currency);
+        return latest.getVersion();
+    }
+
+    private long exchangeRateSaved(ExchangeRate exchangeRate) {
+        if (latest == null) reload();
+        latest = latest.withExchangeRate(latest.getVersion() + 1, exchangeRate);
+        unpublished.add(exchangeRate);
+        return latest.getVersion();
+    }
+
+    // Readers only ever see snapshots whose cross-rate matrix is built. The matrix is built outside the write lock,
+    // and writers that stage while a build runs are covered by the next one, so a burst of writes shares a rebuild.
+    private void swapIn(long version) {
+        synchronized (swapLock) {
+            if (snapshot.getVersion() >= version) return;
+
+            RateSnapshot staged;
+            int stagedRates;
+            writeLock.lock();
+            try {
+                staged = latest;
+                stagedRates = unpublished.size();
+            } finally {
+                writeLock.unlock();
+            }
+
+            staged.getRateMatrix();
+
+            writeLock.lock();
+            try {
+                if (staged.getVersion() > snapshot.getVersion()) {
+                    snapshot = staged;
+                    dataVersion.bump();
+                    publish(staged, stagedRates);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void publish(RateSnapshot current, int stagedRates) {
+        List<ExchangeRate> published = unpublished.subList(0, stagedRates);
+        for (ExchangeRate exchangeRate : published) {
+            publish(current, exchangeRate);
+        }
+        published.clear();
+    }
+
+    private void publish(RateSnapshot current, ExchangeRate exchangeRate) {
+        Optional<Currency> baseCurrency = current.findCurrencyById(exchangeRate.getBaseCurrencyId());
+        Optional<Currency> targetCurrency = current.findCurrencyById(exchangeRate.getTargetCurrencyId());
+        if (baseCurrency.isEmpty() || targetCurrency.isEmpty()) return;
+
+        for (RateChangeListener listener : listeners) {
+            listener.rateChanged(baseCurrency.get(), targetCurrency.get(), exchangeRate);
+        }
+    }
+}
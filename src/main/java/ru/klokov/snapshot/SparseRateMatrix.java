@@ -0,0 +1,30 @@
+package ru.klokov.snapshot;
+
+final class SparseRateMatrix extends RateMatrix {
+    private final LongLongHashMap cells;
+
+    SparseRateMatrix(int size) {
+        super(size);
+        cells = new LongLongHashMap(size * 8, ABSENT);
+    }
+
+    @Override
+    public int getPairCount() {
+        return cells.size();
+    }
+
+    @Override
+    long getPacked(int baseIndex, int targetIndex) {
+        return cells.get(cell(baseIndex, targetIndex));
+    }
+
+    @Override
+    void putPacked(int baseIndex, int targetIndex, long packed) {
+        cells.put(cell(baseIndex, targetIndex), packed);
+    }
+
+    @Override
+    long footprintBytes() {
+        return cells.footprintBytes();
+    }
+}
@@ -0,0 +1,166 @@
+package ru.klokov.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import ru.klokov.model.Currency;
+import ru.klokov.model.ExchangeRate;
+import ru.klokov.response.ExchangeRateResponse;
+import ru.klokov.snapshot.RateChangeListener;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RateStreamHub implements RateChangeListener, AutoCloseable {
+    private static final byte[] EVENT_PREFIX = "event: rate\ndata: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final RateSnapshotHolder rateSnapshotHolder;
+    private final ObjectMapper mapper;
+    private final int maxSubscribers;
+    private final Set<RateSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<RateSubscriber> allPairsSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<RateSubscriber>> subscribersByPair = new ConcurrentHashMap<>();
+    private final ExecutorService writeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rate-stream-", 0).factory());
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder conflatedEvents = new LongAdder();
+
+    public RateStreamHub(RateSnapshotHolder rateSnapshotHolder, ObjectMapper mapper, int maxSubscribers, long heartbeatSeconds) {
+        this.rateSnapshotHolder = rateSnapshotHolder;
+        this.mapper = mapper;
+        this.maxSubscribers = maxSubscribers;
+        heartbeatScheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    public boolean isFull() {
+        return subscribers.size() >= maxSubscribers;
+    }
+
+    public void subscribe(AsyncContext asyncContext, Set<String> pairs) throws IOException {
+        RateSubscriber subscriber = new RateSubscriber(this, asyncContext, pairs);
+        asyncContext.addListener(subscriber);
+        subscribers.add(subscriber);
+
+        if (pairs.isEmpty()) {
+            allPairsSubscribers.add(subscriber);
+        } else {
+            for (String pair : pairs) {
+                subscribersByPair.computeIfAbsent(pair, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        }
+
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        for (ExchangeRate exchangeRate : snapshot.getExchangeRates()) {
+            Optional<Currency> baseCurrency = snapshot.findCurrencyById(exchangeRate.getBaseCurrencyId());
+            Optional<Currency> targetCurrency = snapshot.findCurrencyById(exchangeRate.getTargetCurrencyId());
+            if (baseCurrency.isEmpty() || targetCurrency.isEmpty()) continue;
+
+            String pair = baseCurrency.get().getCode() + targetCurrency.get().getCode();
+            if (pairs.isEmpty() || pairs.contains(pair))
+                subscriber.offer(pair, frame(baseCurrency.get(), targetCurrency.get(), exchangeRate));
+        }
+
+        asyncContext.getResponse().getOutputStream().setWriteListener(subscriber);
+    }
+
+    @Override
+    public void rateChanged(Currency baseCurrency, Currency targetCurrency, ExchangeRate exchangeRate) {
+        if (subscribers.isEmpty()) return;
+
+        String pair = baseCurrency.getCode() + targetCurrency.getCode();
+        Set<RateSubscriber> pairSubscribers = subscribersByPair.get(pair);
+        if (allPairsSubscribers.isEmpty() && (pairSubscribers == null || pairSubscribers.isEmpty())) return;
+
+        byte[] frame = frame(baseCurrency, targetCurrency, exchangeRate);
+        for (RateSubscriber subscriber : allPairsSubscribers) {
+            subscriber.offer(pair, frame);
+        }
+        if (pairSubscribers != null) {
+            for (RateSubscriber subscriber : pairSubscribers) {
+                subscriber.offer(pair, frame);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getSentEvents() {
+        return sentEvents.sum();
+    }
+
+    public long getConflatedEvents() {
+        return conflatedEvents.sum();
+    }
+
+    @Override
+    public void close() {
+        heartbeatScheduler.shutdownNow();
+        for (RateSubscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        writeExecutor.close();
+    }
+
+    void unsubscribe(RateSubscriber subscriber) {
+        subscribers.remove(subscriber);
+        allPairsSubscribers.remove(subscriber);
+        for (String pair : subscriber.getPairs()) {
+            Set<RateSubscriber> pairSubscribers = subscribersByPair.get(pair);
+            if (pairSubscribers != null) pairSubscribers.remove(subscriber);
+        }
+    }
+
+    void execute(Runnable task) {
+        writeExecutor.execute(task);
+    }
+
+    void eventSent() {
+        sentEvents.increment();
+    }
+
+    void eventConflated() {
+        conflatedEvents.increment();
+    }
+
+    private void heartbeat() {
+        for (RateSubscriber subscriber : subscribers) {
+            subscriber.heartbeat();
+        }
+    }
+
+    private byte[] frame(Currency baseCurrency, Currency targetCurrency, ExchangeRate exchangeRate) {
+        ExchangeRateResponse exchangeRateResponse = new ExchangeRateResponse(
+                exchangeRate.getId(),
+                baseCurrency,
+                targetCurrency,
+                exchangeRate.getRate()
+        );
+
+        try {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(256);
+            frame.write(EVENT_PREFIX);
+            frame.write(mapper.writeValueAsBytes(exchangeRateResponse));
+            frame.write(EVENT_SUFFIX);
+            return frame.toByteArray();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Rate event serialization failed!", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.klokov.stream;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+class RateSubscriber implements WriteListener, AsyncListener {
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final RateStreamHub hub;
+    private final AsyncContext asyncContext;
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Set<String> pairs;
+    private volatile boolean writable;
+    private volatile boolean heartbeatDue;
+    private volatile boolean closed;
+    private boolean unflushed;
+
+    RateSubscriber(RateStreamHub hub, AsyncContext asyncContext, Set<String> pairs) {
+        this.hub = hub;
+        this.asyncContext = asyncContext;
+        this.pairs = pairs;
+    }
+
+    Set<String> getPairs() {
+        return pairs;
+    }
+
+    void offer(String pair, byte[] frame) {
+        if (closed) return;
+
+        if (pending.put(pair, frame) != null) hub.eventConflated();
+        scheduleDrain();
+    }
+
+    void heartbeat() {
+        heartbeatDue = true;
+        scheduleDrain();
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        hub.unsubscribe(this);
+        pending.clear();
+
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        writable = true;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void scheduleDrain() {
+        if (writable && !closed && drainScheduled.compareAndSet(false, true)) hub.execute(this::drain);
+    }
+
+    private void drain() {
+        writeLock.lock();
+        try {
+            drainScheduled.set(false);
+            if (closed) return;
+
+            ServletOutputStream outputStream = asyncContext.getResponse().getOutputStream();
+            while (outputStream.isReady()) {
+                byte[] frame = nextFrame();
+                if (frame == null) {
+                    if (!unflushed) return;
+                    unflushed = false;
+                    outputStream.flush();
+                    continue;
+                }
+                outputStream.write(frame);
+                unflushed = true;
+                if (frame != HEARTBEAT) hub.eventSent();
+            }
+        } catch (IOException | IllegalStateException e) {
+            close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private byte[] nextFrame() {
+        Iterator<Map.Entry<String, byte[]>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, byte[]> entry = iterator.next();
+            if (pending.remove(entry.getKey(), entry.getValue())) return entry.getValue();
+        }
+
+        if (heartbeatDue) {
+            heartbeatDue = false;
+            return HEARTBEAT;
+        }
+        return null;
+    }
+}
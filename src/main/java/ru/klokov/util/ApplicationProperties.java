@@ -0,0 +1,37 @@
+package ru.klokov.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+public class ApplicationProperties {
+    private static final String FILE_NAME = "application.properties";
+    private final Properties properties = new Properties();
+
+    public ApplicationProperties() {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(FILE_NAME)) {
+            if (inputStream != null) properties.load(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Application properties file error!");
+        }
+    }
+
+    public String getString(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
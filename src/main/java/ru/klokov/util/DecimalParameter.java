@@ -0,0 +1,27 @@
+package ru.klokov.util;
+
+import java.math.BigDecimal;
+
+public class DecimalParameter {
+    // Amounts keep the historical BigDecimal.valueOf(double) form, so "10" is echoed as 10.0 and "1e2" as 100.0.
+    public static BigDecimal parseAmount(String value) {
+        if (value == null) return null;
+
+        try {
+            return BigDecimal.valueOf(Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static BigDecimal parseRate(String value) {
+        if (value == null) return null;
+
+        try {
+            BigDecimal rate = new BigDecimal(value.trim());
+            return rate.scale() < 0 ? rate.setScale(0) : rate;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.klokov.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ru.klokov.exception.WrongParametersException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class FieldProjection {
+    private static final FieldProjection ALL_FIELDS = new FieldProjection(Map.of());
+
+    private final Map<String, Set<String>> fields;
+
+    private FieldProjection(Map<String, Set<String>> fields) {
+        this.fields = fields;
+    }
+
+    public static FieldProjection parse(String value, List<String> allowedFields) {
+        if (value == null || value.isBlank()) return ALL_FIELDS;
+
+        Map<String, Set<String>> fields = new LinkedHashMap<>();
+        for (String field : value.split(",")) {
+            String trimmed = field.trim();
+            if (!allowedFields.contains(trimmed))
+                throw new WrongParametersException("Unknown field " + trimmed + "! Use any of " + String.join(", ", allowedFields) + ".");
+
+            int dot = trimmed.indexOf('.');
+            String name = dot < 0 ? trimmed : trimmed.substring(0, dot);
+            Set<String> nested = fields.get(name);
+            if (dot < 0) fields.put(name, Set.of());
+            else if (nested == null) fields.put(name, new LinkedHashSet<>(Set.of(trimmed.substring(dot + 1))));
+            else if (!nested.isEmpty()) nested.add(trimmed.substring(dot + 1));
+        }
+        return new FieldProjection(fields);
+    }
+
+    public <T> ResponseHandler.ArrayWriter<Object> apply(ObjectMapper mapper, ResponseHandler.ArrayWriter<T> arrayWriter) {
+        if (fields.isEmpty()) return element -> arrayWriter.write(element::accept);
+        return element -> arrayWriter.write(value -> element.accept(apply(mapper, value)));
+    }
+
+    private ObjectNode apply(ObjectMapper mapper, Object value) {
+        ObjectNode node = mapper.valueToTree(value);
+        node.retain(fields.keySet());
+
+        for (Map.Entry<String, Set<String>> field : fields.entrySet()) {
+            if (!field.getValue().isEmpty() && node.get(field.getKey()) instanceof ObjectNode nested)
+                nested.retain(field.getValue());
+        }
+        return node;
+    }
+}
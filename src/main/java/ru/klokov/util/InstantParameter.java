@@ -0,0 +1,20 @@
+package ru.klokov.util;
+
+import ru.klokov.exception.WrongParametersException;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+public class InstantParameter {
+    public static Instant parse(String value) {
+        if (value == null || value.isBlank()) return null;
+
+        String trimmed = value.trim();
+        try {
+            if (trimmed.chars().allMatch(Character::isDigit)) return Instant.ofEpochMilli(Long.parseLong(trimmed));
+            return Instant.parse(trimmed);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new WrongParametersException("Wrong asOf parameter! Use epoch milliseconds or an ISO-8601 instant.");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.klokov.util;
+
+import java.math.BigDecimal;
+
+public final class PackedDecimal {
+    public static final long ABSENT = Long.MIN_VALUE;
+    public static final long OVERFLOW = Long.MIN_VALUE + 1;
+    private static final long MAX_UNSCALED = (1L << 55) - 1;
+    private static final long MIN_UNSCALED = -MAX_UNSCALED;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private PackedDecimal() {
+    }
+
+    public static long pack(long unscaled, int scale) {
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) return OVERFLOW;
+        if (unscaled < MIN_UNSCALED || unscaled > MAX_UNSCALED) return OVERFLOW;
+
+        return (unscaled << 8) | (scale & 0xFF);
+    }
+
+    public static long pack(BigDecimal value) {
+        if (value.precision() > 18) return OVERFLOW;
+
+        return pack(value.unscaledValue().longValue(), value.scale());
+    }
+
+    public static long unscaled(long packed) {
+        return packed >> 8;
+    }
+
+    public static int scale(long packed) {
+        return (byte) packed;
+    }
+
+    public static BigDecimal toBigDecimal(long packed) {
+        return BigDecimal.valueOf(unscaled(packed), scale(packed));
+    }
+
+    public static long parse(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+
+        if (length > 0 && (value.charAt(0) == '+' || value.charAt(0) == '-')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+
+        long unscaled = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9' || unscaled > MAX_UNSCALED / 10) return OVERFLOW;
+
+            unscaled = unscaled * 10 + (c - '0');
+            digits++;
+            if (fraction) scale++;
+        }
+        if (digits == 0) return OVERFLOW;
+
+        return pack(negative ? -unscaled : unscaled, scale);
+    }
+
+    public static long multiply(long packedAmount, long packedRate, int targetScale) {
+        long amount = unscaled(packedAmount);
+        long rate = unscaled(packedRate);
+        long product = amount * rate;
+        if (Math.multiplyHigh(amount, rate) != (product >> 63)) return OVERFLOW;
+
+        int shift = scale(packedAmount) + scale(packedRate) - targetScale;
+        long result;
+        if (shift == 0) {
+            result = product;
+        } else if (shift > 0) {
+            if (shift >= POWERS_OF_TEN.length) return OVERFLOW;
+            result = divideHalfEven(product, POWERS_OF_TEN[shift]);
+        } else {
+            if (-shift >= POWERS_OF_TEN.length) return OVERFLOW;
+            long multiplier = POWERS_OF_TEN[-shift];
+            result = product * multiplier;
+            if (Math.multiplyHigh(product, multiplier) != (result >> 63)) return OVERFLOW;
+        }
+
+        if (result < MIN_UNSCALED || result > MAX_UNSCALED) return OVERFLOW;
+        return result;
+    }
+
+    public static long multiplyExact(long packedLeft, long packedRight) {
+        int scale = scale(packedLeft) + scale(packedRight);
+        long product = multiply(packedLeft, packedRight, scale);
+        if (product == OVERFLOW) return OVERFLOW;
+
+        return pack(product, scale);
+    }
+
+    public static long divide(long packedDividend, long packedDivisor, int targetScale) {
+        long dividend = unscaled(packedDividend);
+        long divisor = unscaled(packedDivisor);
+        if (divisor == 0) return OVERFLOW;
+        if (divisor < 0) {
+            dividend = -dividend;
+            divisor = -divisor;
+        }
+
+        int shift = targetScale + scale(packedDivisor) - scale(packedDividend);
+        if (Math.abs(shift) >= POWERS_OF_TEN.length) return OVERFLOW;
+        if (shift > 0) {
+            long multiplier = POWERS_OF_TEN[shift];
+            long scaled = dividend * multiplier;
+            if (Math.multiplyHigh(dividend, multiplier) != (scaled >> 63)) return OVERFLOW;
+            dividend = scaled;
+        } else if (shift < 0) {
+            long multiplier = POWERS_OF_TEN[-shift];
+            long scaled = divisor * multiplier;
+            if (Math.multiplyHigh(divisor, multiplier) != 0 || scaled < 0) return OVERFLOW;
+            divisor = scaled;
+        }
+        if (divisor > Long.MAX_VALUE / 2) return OVERFLOW;
+
+        long result = divideHalfEven(dividend, divisor);
+        if (result < MIN_UNSCALED || result > MAX_UNSCALED) return OVERFLOW;
+        return result;
+    }
+
+    private static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder == 0) return quotient;
+
+        int comparison = Long.compare(remainder * 2, divisor);
+        if (comparison > 0 || (comparison == 0 && (quotient & 1) != 0)) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
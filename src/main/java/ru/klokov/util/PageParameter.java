@@ -0,0 +1,45 @@
+package ru.klokov.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import ru.klokov.exception.WrongParametersException;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+public class PageParameter {
+    public static boolean isRequested(HttpServletRequest req, String... names) {
+        for (String name : names) {
+            if (req.getParameter(name) != null) return true;
+        }
+        return false;
+    }
+
+    public static int parseLimit(String value, int defaultLimit, int maxLimit) {
+        if (value == null || value.isBlank()) return defaultLimit;
+
+        try {
+            int limit = Integer.parseInt(value.trim());
+            if (limit > 0 && limit <= maxLimit) return limit;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new WrongParametersException("Wrong limit parameter! Use a number from 1 to " + maxLimit + ".");
+    }
+
+    public static String parseCode(String name, String value, int length) {
+        if (value == null) return null;
+        if (value.length() != length) throw new WrongParametersException("Wrong " + name + " parameter!");
+        return value.toUpperCase();
+    }
+
+    public static String nextLink(HttpServletRequest req, String after) {
+        StringBuilder link = new StringBuilder("<").append(req.getRequestURI()).append('?');
+        if (req.getQueryString() != null) {
+            for (String parameter : req.getQueryString().split("&")) {
+                if (parameter.isEmpty() || parameter.equals("after") || parameter.startsWith("after=")) continue;
+                link.append(parameter).append('&');
+            }
+        }
+        return link.append("after=").append(URLEncoder.encode(after, StandardCharsets.UTF_8))
+                .append(">; rel=\"next\"").toString();
+    }
+}
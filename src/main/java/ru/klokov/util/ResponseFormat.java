@@ -0,0 +1,66 @@
+package ru.klokov.util;
+
+public enum ResponseFormat {
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile"),
+    CBOR("application/cbor");
+
+    private final String mediaType;
+
+    ResponseFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static ResponseFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) return JSON;
+
+        ResponseFormat selected = JSON;
+        double selectedQuality = 0;
+        double wildcardQuality = -1;
+        boolean jsonListed = false;
+
+        for (String part : accept.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String mediaRange = tokens[0].trim().toLowerCase();
+            double quality = quality(tokens);
+
+            ResponseFormat format = switch (mediaRange) {
+                case "application/json" -> JSON;
+                case "application/x-jackson-smile", "application/smile" -> SMILE;
+                case "application/cbor" -> CBOR;
+                case "*/*", "application/*" -> {
+                    wildcardQuality = Math.max(wildcardQuality, quality);
+                    yield null;
+                }
+                default -> null;
+            };
+            if (format == null) continue;
+
+            if (format == JSON) jsonListed = true;
+            if (quality > selectedQuality) {
+                selected = format;
+                selectedQuality = quality;
+            }
+        }
+
+        if (!jsonListed && wildcardQuality > selectedQuality) return JSON;
+        return selected;
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (!parameter.startsWith("q=")) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+}
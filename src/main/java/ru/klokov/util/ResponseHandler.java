@@ -1,13 +1,69 @@
 package ru.klokov.util;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
 public class ResponseHandler {
+    public static final int DEFAULT_FLUSH_EVERY = 512;
+
     public static void sendResponse(HttpServletResponse resp, int code, String message) throws IOException {
         resp.setStatus(code);
-        resp.getWriter().write(message);
-        resp.getWriter().close();
+        resp.setCharacterEncoding("UTF-8");
+        try (OutputStream outputStream = resp.getOutputStream()) {
+            outputStream.write(message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static void sendJson(HttpServletResponse resp, int code, ObjectMapper mapper, Object value) throws IOException {
+        resp.setStatus(code);
+        if (!mapper.getFactory().canHandleBinaryNatively()) resp.setCharacterEncoding("UTF-8");
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(resp.getOutputStream(), JsonEncoding.UTF8)) {
+            mapper.writeValue(generator, value);
+        }
+    }
+
+    public static <T> void sendJsonArray(HttpServletResponse resp, int code, ObjectMapper mapper,
+                                         ArrayWriter<T> arrayWriter) throws IOException {
+        sendJsonArray(resp, code, mapper, arrayWriter, DEFAULT_FLUSH_EVERY);
+    }
+
+    public static <T> void sendJsonArray(HttpServletResponse resp, int code, ObjectMapper mapper,
+                                         ArrayWriter<T> arrayWriter, int flushEvery) throws IOException {
+        resp.setStatus(code);
+        if (!mapper.getFactory().canHandleBinaryNatively()) resp.setCharacterEncoding("UTF-8");
+        JsonGenerator generator = mapper.getFactory().createGenerator(resp.getOutputStream(), JsonEncoding.UTF8);
+        ObjectWriter elementWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        int[] written = {0};
+
+        generator.writeStartArray();
+        try {
+            arrayWriter.write(element -> {
+                try {
+                    elementWriter.writeValue(generator, element);
+                    if (flushEvery > 0 && ++written[0] % flushEvery == 0) generator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    @FunctionalInterface
+    public interface ArrayWriter<T> {
+        void write(Consumer<T> element);
     }
 }
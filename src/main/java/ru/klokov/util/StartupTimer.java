@@ -0,0 +1,34 @@
+package ru.klokov.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+public class StartupTimer {
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private long lastMark = System.nanoTime();
+
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.merge(phase, now - lastMark, Long::sum);
+        lastMark = now;
+    }
+
+    public synchronized void record(String phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    public synchronized Map<String, Long> getPhaseNanos() {
+        return new LinkedHashMap<>(phaseNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            joiner.add(phase.getKey() + "=" + TimeUnit.NANOSECONDS.toMillis(phase.getValue()) + "ms");
+        }
+        return joiner.toString();
+    }
+}
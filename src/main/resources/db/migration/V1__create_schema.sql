@@ -0,0 +1,43 @@
+CREATE TABLE IF NOT EXISTS currencies (
+    id INTEGER PRIMARY KEY,
+    code TEXT UNIQUE NOT NULL,
+    full_name TEXT NOT NULL,
+    sign TEXT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_id
+ON currencies(id);
+CREATE INDEX IF NOT EXISTS idx_code
+ON currencies(code);
+
+CREATE TABLE IF NOT EXISTS exchange_rates (
+    id INTEGER PRIMARY KEY,
+    base_currency_id INTEGER,
+    target_currency_id INTEGER,
+    rate DECIMAL(10, 6),
+    FOREIGN KEY (base_currency_id) REFERENCES currencies (id),
+    FOREIGN KEY (target_currency_id) REFERENCES currencies (id),
+    UNIQUE (base_currency_id, target_currency_id)
+);
+CREATE INDEX IF NOT EXISTS idx_currency_pair
+ON exchange_rates(base_currency_id, target_currency_id);
+
+CREATE TABLE IF NOT EXISTS exchange_rate_history (
+    base_currency_id INTEGER NOT NULL,
+    target_currency_id INTEGER NOT NULL,
+    effective_time INTEGER NOT NULL,
+    rate DECIMAL(10, 6) NOT NULL,
+    PRIMARY KEY (base_currency_id, target_currency_id, effective_time)
+) WITHOUT ROWID;
+
+CREATE TRIGGER IF NOT EXISTS trg_exchange_rates_insert_history
+AFTER INSERT ON exchange_rates
+BEGIN
+    INSERT OR REPLACE INTO exchange_rate_history (base_currency_id, target_currency_id, effective_time, rate)
+    VALUES (NEW.base_currency_id, NEW.target_currency_id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER), NEW.rate);
+END;
+CREATE TRIGGER IF NOT EXISTS trg_exchange_rates_update_history
+AFTER UPDATE OF rate ON exchange_rates
+BEGIN
+    INSERT OR REPLACE INTO exchange_rate_history (base_currency_id, target_currency_id, effective_time, rate)
+    VALUES (NEW.base_currency_id, NEW.target_currency_id, CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER), NEW.rate);
+END;
@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS idx_target_currency_pair
+ON exchange_rates(target_currency_id, base_currency_id);
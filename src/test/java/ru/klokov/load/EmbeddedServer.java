@@ -0,0 +1,82 @@
+package ru.klokov.load;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Constants;
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import ru.klokov.servlet.ApplicationServletContextListener;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class EmbeddedServer implements AutoCloseable {
+    private final Tomcat tomcat;
+
+    private EmbeddedServer(Tomcat tomcat) {
+        this.tomcat = tomcat;
+    }
+
+    public static EmbeddedServer start(int port, int maxThreads) throws IOException, LifecycleException {
+        Path baseDir = Files.createTempDirectory("currency-exchange-tomcat");
+        Path docBase = Files.createDirectories(baseDir.resolve("webapp"));
+        if (System.getProperty("db.path") == null && System.getProperty("db.url") == null)
+            System.setProperty("db.path", baseDir.resolve("currency_exchange.db").toString());
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(port);
+        Connector connector = tomcat.getConnector();
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+
+        Context context = tomcat.addContext("", docBase.toString());
+        context.setParentClassLoader(EmbeddedServer.class.getClassLoader());
+        ContextConfig contextConfig = new ContextConfig();
+        contextConfig.setDefaultWebXml(Constants.NoDefaultWebXml);
+        context.addLifecycleListener(contextConfig);
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+
+        StandardRoot resources = new StandardRoot(context);
+        resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes", classesDirectory(), "/"));
+        context.setResources(resources);
+
+        tomcat.start();
+        if (context.getState() != LifecycleState.STARTED) {
+            tomcat.stop();
+            tomcat.destroy();
+            throw new LifecycleException("Web application failed to start, see the container log!");
+        }
+        return new EmbeddedServer(tomcat);
+    }
+
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    public URI uri(String pathAndQuery) {
+        return URI.create("http://localhost:" + getPort() + pathAndQuery);
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    private static String classesDirectory() {
+        try {
+            return Path.of(ApplicationServletContextListener.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot locate application classes!", e);
+        }
+    }
+}
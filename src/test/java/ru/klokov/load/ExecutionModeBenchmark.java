@@ -0,0 +1,119 @@
+package ru.klokov.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ExecutionModeBenchmark {
+    private static final String[] MODES = {"sync", "virtual"};
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrencyLevels = Arrays.stream(System.getProperty("bench.concurrency", "32,256,1024").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        Duration warmup = Duration.ofSeconds(Long.getLong("bench.warmupSeconds", 5));
+        Duration duration = Duration.ofSeconds(Long.getLong("bench.durationSeconds", 15));
+        int maxThreads = Integer.getInteger("bench.maxThreads", 200);
+
+        System.out.printf("%-8s %8s %12s %10s %10s %10s %8s%n", "mode", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String mode : MODES) {
+            System.setProperty("servlet.execution", mode);
+            try (EmbeddedServer server = EmbeddedServer.start(0, maxThreads)) {
+                List<URI> targets = targets(server);
+                run(targets, concurrencyLevels[0], warmup);
+                for (int concurrency : concurrencyLevels) {
+                    Result result = run(targets, concurrency, duration);
+                    System.out.printf("%-8s %8d %12.1f %10.2f %10.2f %10.2f %8d%n", mode, concurrency,
+                            result.count / (double) duration.toSeconds(),
+                            result.percentile(50) / 1e6, result.percentile(99) / 1e6, result.percentile(100) / 1e6,
+                            result.errors);
+                }
+            }
+        }
+    }
+
+    private static List<URI> targets(EmbeddedServer server) {
+        long asOf = System.currentTimeMillis();
+        List<URI> targets = new ArrayList<>();
+        for (String path : System.getProperty("bench.paths",
+                "/exchange?from=USD&to=EUR&amount=10&asOf={asOf},/exchangeRate/USDRUB?asOf={asOf}").split(",")) {
+            targets.add(server.uri(path.trim().replace("{asOf}", String.valueOf(asOf))));
+        }
+        return targets;
+    }
+
+    private static Result run(List<URI> targets, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Result>> futures = new ArrayList<>();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clients).build()) {
+            for (int i = 0; i < concurrency; i++) {
+                int offset = i;
+                futures.add(clients.submit(() -> client(httpClient, targets, offset, deadline)));
+            }
+
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+            return total;
+        }
+    }
+
+    private static Result client(HttpClient httpClient, List<URI> targets, int offset, long deadline) {
+        Result result = new Result();
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            HttpRequest request = HttpRequest.newBuilder(targets.get(i % targets.size()))
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) result.errors++;
+            } catch (Exception e) {
+                result.errors++;
+            }
+            result.record(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private static class Result {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private boolean sorted;
+
+        void record(long latencyNanos) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latencyNanos;
+            sorted = false;
+        }
+
+        void add(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) return 0;
+            if (!sorted) {
+                Arrays.sort(latencies, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return latencies[Math.max(0, Math.min(index, count - 1))];
+        }
+    }
+}
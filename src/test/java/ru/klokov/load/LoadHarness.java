@@ -0,0 +1,208 @@
+package ru.klokov.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadHarness {
+    private static final String[] CURRENCY_CODES = {"USD", "EUR", "RUB", "JPY", "CNY", "GBP", "UAH", "KZT", "NOK"};
+    private static final String[] PATCH_PAIRS = {"USDEUR", "USDRUB", "USDJPY", "USDCNY", "GBPUSD", "EURRUB"};
+    private static final Set<String> ENDPOINT_NAMES = Set.of("exchange", "exchangeRates", "exchangeRatePatch", "currencies");
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final List<Endpoint> endpoints;
+    private final int totalWeight;
+    private final Random random = new Random(42);
+
+    private LoadHarness(HttpClient httpClient, String baseUrl, List<Endpoint> endpoints) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.endpoints = endpoints;
+        this.totalWeight = endpoints.stream().mapToInt(endpoint -> endpoint.weight).sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "500"));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmupSeconds", 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.durationSeconds", 30));
+        List<Endpoint> endpoints = endpoints(System.getProperty("load.mix",
+                "exchange=60,exchangeRates=10,exchangeRatePatch=5,currencies=25"));
+        String baseUrl = System.getProperty("load.baseUrl");
+
+        EmbeddedServer server = null;
+        if (baseUrl == null) {
+            server = EmbeddedServer.start(Integer.getInteger("load.port", 0), Integer.getInteger("load.maxThreads", 200));
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        try (ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clientExecutor).build()) {
+            LoadHarness harness = new LoadHarness(httpClient, baseUrl, endpoints);
+
+            System.out.printf("Warming up for %ds at %.0f req/s against %s%n", warmup.toSeconds(), rate, baseUrl);
+            harness.run(rate, warmup);
+            endpoints.forEach(Endpoint::reset);
+
+            System.out.printf("Measuring for %ds at %.0f req/s%n", duration.toSeconds(), rate);
+            long elapsedNanos = harness.run(rate, duration);
+            report(endpoints, elapsedNanos);
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    private long run(double rate, Duration duration) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long requests = (long) (rate * duration.toSeconds());
+        long start = System.nanoTime();
+
+        try (ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < requests; i++) {
+                long intendedStart = start + i * intervalNanos;
+                long delay = intendedStart - System.nanoTime();
+                if (delay > 0) LockSupport.parkNanos(delay);
+
+                Endpoint endpoint = pick();
+                HttpRequest request = endpoint.request(baseUrl, random);
+                requestExecutor.execute(() -> send(endpoint, request, intendedStart));
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private void send(Endpoint endpoint, HttpRequest request, long intendedStart) {
+        long actualStart = System.nanoTime();
+        boolean failed;
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            failed = response.statusCode() >= 400;
+        } catch (Exception e) {
+            failed = true;
+        }
+        long end = System.nanoTime();
+
+        endpoint.responseTime.recordValue(Math.min(toMicros(end - intendedStart), HIGHEST_TRACKABLE_MICROS));
+        endpoint.serviceTime.recordValue(Math.min(toMicros(end - actualStart), HIGHEST_TRACKABLE_MICROS));
+        if (failed) endpoint.errors.increment();
+    }
+
+    private Endpoint pick() {
+        int value = random.nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            value -= endpoint.weight;
+            if (value < 0) return endpoint;
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+
+    private static void report(List<Endpoint> endpoints, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalErrors = 0;
+
+        System.out.println();
+        System.out.println("Response time is measured from the scheduled send time (coordinated omission corrected),");
+        System.out.println("service time from the moment the request was actually sent. Latencies in ms.");
+        System.out.printf("%-18s %9s %7s %9s %9s %9s %9s %9s %12s%n",
+                "endpoint", "requests", "errors", "req/s", "p50", "p99", "p99.9", "max", "service p99");
+        for (Endpoint endpoint : endpoints) {
+            print(endpoint.name, endpoint.responseTime, endpoint.serviceTime, endpoint.errors.sum(), seconds);
+            total.add(endpoint.responseTime);
+            totalErrors += endpoint.errors.sum();
+        }
+        print("total", total, null, totalErrors, seconds);
+    }
+
+    private static void print(String name, Histogram responseTime, Histogram serviceTime, long errors, double seconds) {
+        System.out.printf(Locale.ROOT, "%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %12s%n",
+                name, responseTime.getTotalCount(), errors, responseTime.getTotalCount() / seconds,
+                millis(responseTime, 50), millis(responseTime, 99), millis(responseTime, 99.9),
+                responseTime.getMaxValue() / 1000.0,
+                serviceTime == null ? "" : String.format(Locale.ROOT, "%.2f", millis(serviceTime, 99)));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static List<Endpoint> endpoints(String mix) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            String name = parts[0].trim();
+            int weight = Integer.parseInt(parts[1].trim());
+            if (!ENDPOINT_NAMES.contains(name))
+                throw new IllegalArgumentException("Unknown endpoint in load mix: " + name + ", expected one of " + ENDPOINT_NAMES);
+            if (weight > 0) endpoints.add(new Endpoint(name, weight));
+        }
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("Load mix has no endpoints with positive weight!");
+        return endpoints;
+    }
+
+    private static class Endpoint {
+        private final String name;
+        private final int weight;
+        private final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+
+        Endpoint(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        HttpRequest request(String baseUrl, Random random) {
+            switch (name) {
+                case "exchange":
+                    String from = CURRENCY_CODES[random.nextInt(CURRENCY_CODES.length)];
+                    String to = CURRENCY_CODES[random.nextInt(CURRENCY_CODES.length)];
+                    return get(baseUrl + "/exchange?from=" + from + "&to=" + to + "&amount=" + (1 + random.nextInt(1000)));
+                case "exchangeRates":
+                    return get(baseUrl + "/exchangeRates");
+                case "exchangeRatePatch":
+                    String rate = String.format(Locale.ROOT, "%.4f", 0.5 + random.nextDouble());
+                    return HttpRequest.newBuilder(URI.create(baseUrl + "/exchangeRate/" + PATCH_PAIRS[random.nextInt(PATCH_PAIRS.length)]))
+                            .timeout(Duration.ofSeconds(30))
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .method("PATCH", HttpRequest.BodyPublishers.ofString("rate=" + rate))
+                            .build();
+                case "currencies":
+                    return get(baseUrl + "/currencies");
+                default:
+                    throw new IllegalArgumentException("Unknown endpoint in load mix: " + name);
+            }
+        }
+
+        void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            errors.reset();
+        }
+
+        private static HttpRequest get(String uri) {
+            return HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(30)).GET().build();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.klokov.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+import ru.klokov.dao.CurrencyDAO;
+import ru.klokov.dao.DataVersion;
+import ru.klokov.dao.ExchangeRateDAO;
+import ru.klokov.datasource.SchemaMigrator;
+import ru.klokov.model.Currency;
+import ru.klokov.response.ExchangeResponse;
+import ru.klokov.snapshot.CrossRatePolicy;
+import ru.klokov.snapshot.RateSnapshot;
+import ru.klokov.snapshot.RateSnapshotHolder;
+import ru.klokov.util.DecimalParameter;
+import ru.klokov.util.PackedDecimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedPointEquivalenceTest {
+    private static final int SCALE = 4;
+    private static final int ARITHMETIC_CASES = 500_000;
+    private static final int AMOUNTS_PER_PAIR = 200;
+    private static final List<String> AMOUNTS = List.of("10", "1e2", "0.1", "1234.56", "100.10", "1e7", "0.0001", "-5");
+
+    private final Random random = new Random(42);
+
+    @Test
+    void packedArithmeticMatchesBigDecimal() {
+        for (int i = 0; i < ARITHMETIC_CASES; i++) {
+            String amountText = randomDecimal(18, 10);
+            BigDecimal rate = new BigDecimal(randomDecimal(18, 20));
+
+            BigDecimal amount = new BigDecimal(amountText);
+            long packedAmount = PackedDecimal.parse(amountText);
+            if (packedAmount != PackedDecimal.OVERFLOW)
+                assertEquals(amount, PackedDecimal.toBigDecimal(packedAmount), "parse " + amountText);
+
+            long packedRate = PackedDecimal.pack(rate);
+            if (packedAmount == PackedDecimal.OVERFLOW || packedRate == PackedDecimal.OVERFLOW) continue;
+
+            long converted = PackedDecimal.multiply(packedAmount, packedRate, SCALE);
+            if (converted == PackedDecimal.OVERFLOW) continue;
+
+            assertEquals(amount.multiply(rate).setScale(SCALE, RoundingMode.HALF_EVEN), BigDecimal.valueOf(converted, SCALE),
+                    "multiply " + amountText + " by " + rate.toPlainString());
+        }
+    }
+
+    @Test
+    void fixedPointConversionMatchesBigDecimalConversion(@TempDir Path directory) {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + directory.resolve("exchange.db"));
+        SchemaMigrator schemaMigrator = new SchemaMigrator(dataSource);
+        schemaMigrator.migrate();
+        schemaMigrator.seedIfEmpty();
+
+        ExchangeRateDAO exchangeRateDAO = new ExchangeRateDAO(dataSource);
+        RateSnapshotHolder rateSnapshotHolder = new RateSnapshotHolder(new CurrencyDAO(dataSource), exchangeRateDAO,
+                new CrossRatePolicy(3, List.of("USD", "EUR"), 2048), new DataVersion());
+        rateSnapshotHolder.reload();
+        ExchangeService exchangeService = new ExchangeService(rateSnapshotHolder, exchangeRateDAO);
+        RateSnapshot snapshot = rateSnapshotHolder.get();
+        List<Currency> currencies = snapshot.getCurrencyIndex().asList();
+
+        for (Currency baseCurrency : currencies) {
+            for (Currency targetCurrency : currencies) {
+                if (snapshot.findRate(baseCurrency, targetCurrency).isEmpty()) continue;
+
+                BigDecimal rate = exchangeService.getRate(snapshot, baseCurrency, targetCurrency);
+                for (String amount : AMOUNTS) {
+                    assertConversion(exchangeService, snapshot, baseCurrency, targetCurrency, rate, amount);
+                }
+                for (int i = 0; i < AMOUNTS_PER_PAIR; i++) {
+                    assertConversion(exchangeService, snapshot, baseCurrency, targetCurrency, rate, randomDecimal(12, 6));
+                }
+            }
+        }
+    }
+
+    private void assertConversion(ExchangeService exchangeService, RateSnapshot snapshot, Currency baseCurrency,
+                                  Currency targetCurrency, BigDecimal rate, String amountText) {
+        BigDecimal amount = BigDecimal.valueOf(Double.parseDouble(amountText));
+        ExchangeResponse actual = exchangeService.convert(snapshot, baseCurrency, targetCurrency,
+                DecimalParameter.parseAmount(amountText));
+        String conversion = baseCurrency.getCode() + "-" + targetCurrency.getCode() + " amount " + amountText;
+
+        assertEquals(rate, actual.getRate(), conversion);
+        assertEquals(amount, actual.getAmount(), conversion);
+        assertEquals(amount.multiply(rate).setScale(SCALE, RoundingMode.HALF_EVEN), actual.getConvertedAmount(), conversion);
+    }
+
+    private String randomDecimal(int maxDigits, int maxScale) {
+        int digits = 1 + random.nextInt(maxDigits);
+        int scale = random.nextInt(Math.min(digits, maxScale) + 1);
+        StringBuilder builder = new StringBuilder(digits + 2);
+
+        if (random.nextInt(8) == 0) builder.append('-');
+        for (int i = 0; i < digits; i++) {
+            if (i == digits - scale) builder.append(i == 0 ? "0." : ".");
+            builder.append((char) ('0' + random.nextInt(10)));
+        }
+        return builder.toString();
+    }
+}
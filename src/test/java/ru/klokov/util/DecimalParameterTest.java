@@ -0,0 +1,28 @@
+package ru.klokov.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DecimalParameterTest {
+    @Test
+    void amountsKeepDoubleNormalisation() {
+        assertEquals("10.0", DecimalParameter.parseAmount("10").toString());
+        assertEquals("100.0", DecimalParameter.parseAmount("1e2").toString());
+        assertEquals("1.1", DecimalParameter.parseAmount("1.10").toString());
+        assertNull(DecimalParameter.parseAmount("ten"));
+        assertNull(DecimalParameter.parseAmount("NaN"));
+    }
+
+    @Test
+    void ratesParseExactly() {
+        assertEquals(new BigDecimal("0.1"), DecimalParameter.parseRate("0.1"));
+        assertEquals(new BigDecimal("0.12345678901234567890"), DecimalParameter.parseRate("0.12345678901234567890"));
+        assertEquals("100", DecimalParameter.parseRate("1e2").toString());
+        assertNull(DecimalParameter.parseRate("0x1p3"));
+        assertNull(DecimalParameter.parseRate("Infinity"));
+    }
+}